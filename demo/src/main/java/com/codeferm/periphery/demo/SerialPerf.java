@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.demo;
+
+import com.codeferm.periphery.device.SerialChannel;
+import com.codeferm.periphery.device.Uart;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import lombok.extern.slf4j.Slf4j;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Serial throughput. A Uart thread writes blocks and a SerialChannel reads them. With no device a pseudo-terminal pair is used, so
+ * this measures software overhead. With a device RX must be jumpered to TX and the baud rate sets the limit.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+@Command(name = "SerialPerf", mixinStandardHelpOptions = true, version = "1.0.0-SNAPSHOT",
+        description = "Test serial throughput.")
+public class SerialPerf implements Callable<Integer> {
+
+    /**
+     * Serial device path option.
+     */
+    @Option(names = {"-d", "--device"}, description = "Serial device with RX to TX jumper, pty by default.")
+    private String device;
+    /**
+     * Baud rate option.
+     */
+    @Option(names = {"-b", "--baud"}, description = "Baud rate, ${DEFAULT-VALUE} by default.", defaultValue = "115200")
+    private int baud;
+    /**
+     * Block size option.
+     */
+    @Option(names = {"-s", "--size"}, description = "Block size, ${DEFAULT-VALUE} by default.", defaultValue = "4096")
+    private int size;
+    /**
+     * Block count option.
+     */
+    @Option(names = {"-c", "--count"}, description = "Blocks to send, ${DEFAULT-VALUE} by default.", defaultValue = "1000")
+    private int count;
+
+    /**
+     * Main parsing, error handling and handling user requests for usage help or version help are done with one line of code.
+     *
+     * @param args Argument list.
+     */
+    public static void main(final String... args) {
+        System.exit(new CommandLine(new SerialPerf()).execute(args));
+    }
+
+    /**
+     * Send blocks and measure receive rate.
+     *
+     * @return Exit code.
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Override
+    public Integer call() throws IOException, InterruptedException {
+        var exitCode = 0;
+        try (final var channel = device == null ? SerialChannel.pty() : new SerialChannel(device, baud); final var uart = new Uart(
+                device == null ? channel.ptyName() : device, baud)) {
+            final var total = (long) size * count;
+            log.info(String.format("Sending %d blocks of %d bytes", count, size));
+            final var writer = Thread.ofPlatform().start(() -> {
+                final var block = ByteBuffer.allocateDirect(size);
+                for (var i = 0; i < count; i++) {
+                    block.clear();
+                    uart.write(block);
+                }
+            });
+            final var rx = ByteBuffer.allocateDirect(65536);
+            var received = 0L;
+            final var start = Instant.now();
+            while (received < total) {
+                rx.clear();
+                final var len = channel.read(rx, 1000);
+                if (len <= 0) {
+                    log.error(String.format("Timed out after %d bytes", received));
+                    exitCode = 1;
+                    break;
+                }
+                received += len;
+            }
+            final var timeElapsed = Duration.between(start, Instant.now()).toMillis();
+            writer.join();
+            log.info(String.format("%d bytes in %d ms, %.2f KB per second", received, timeElapsed, ((double) received / 1024.0)
+                    / ((double) Math.max(timeElapsed, 1) / 1000.0)));
+        }
+        return exitCode;
+    }
+}
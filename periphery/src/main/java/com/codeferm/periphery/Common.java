@@ -6,10 +6,12 @@ package com.codeferm.periphery;
 import static org.fusesource.hawtjni.runtime.ArgFlag.CRITICAL;
 import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
 import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
+import java.nio.ByteBuffer;
 import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniMethod;
 import org.fusesource.hawtjni.runtime.Library;
+import static org.fusesource.hawtjni.runtime.MethodFlag.JNI;
 
 /**
  * Java Periphery common code.
@@ -76,6 +78,39 @@ public class Common {
             @JniArg(cast = "void *") long dest, @JniArg(cast = "const void *", flags = {NO_OUT, CRITICAL}) byte[] src, @JniArg(cast
                     = "size_t") long size);
 
+    /**
+     * Wrap native memory in a direct ByteBuffer. No memory is copied or allocated, so the buffer is only valid while the native
+     * memory is. Byte order defaults to big endian, so set native order as needed.
+     *
+     * @param address Pointer to C memory.
+     * @param capacity Size of memory in bytes.
+     * @return Direct ByteBuffer.
+     */
+    @JniMethod(flags = {JNI}, accessor = "NewDirectByteBuffer")
+    public static final native ByteBuffer newDirectByteBuffer(@JniArg(cast = "void *") long address, long capacity);
+
+    /**
+     * Return address of direct ByteBuffer memory.
+     *
+     * @param buf Direct ByteBuffer.
+     * @return Pointer to C memory or NULL if buffer is not direct.
+     */
+    @JniMethod(flags = {JNI}, accessor = "GetDirectBufferAddress", cast = "void *")
+    public static final native long getDirectBufferAddress(@JniArg(cast = "jobject") Object buf);
+
+    /**
+     * Return address of direct ByteBuffer at its position, so natives can read or write position to limit without copying.
+     *
+     * @param buf Direct ByteBuffer.
+     * @return Pointer to C memory at buffer position.
+     */
+    public static long bufferAddress(final ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            throw new IllegalArgumentException("ByteBuffer must be direct");
+        }
+        return getDirectBufferAddress(buf) + buf.position();
+    }
+
     /**
      * Convert C style string to Java String.
      *
@@ -12,8 +12,10 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
 import org.fusesource.hawtjni.runtime.ClassFlag;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -475,6 +477,98 @@ public class Gpio implements AutoCloseable {
     @JniMethod(accessor = "gpio_poll_multiple")
     public static native int gpioPollMultiple(long[] gpios, int count, int timeoutMs, boolean[] gpiosReady);
 
+    /**
+     * Helper function to create an epoll set for line event file descriptors.
+     *
+     * @return epoll file descriptor, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_epoll_create")
+    public static native int gpioEpollCreate();
+
+    /**
+     * Helper function to add a line event file descriptor (see gpioFd) to an epoll set. The line file descriptor is made
+     * non-blocking.
+     *
+     * @param epfd epoll file descriptor.
+     * @param fd Line file descriptor.
+     * @param id Caller's id returned with each event.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_epoll_add")
+    public static native int gpioEpollAdd(int epfd, int fd, int id);
+
+    /**
+     * Helper function to remove a line event file descriptor from an epoll set.
+     *
+     * @param epfd epoll file descriptor.
+     * @param fd Line file descriptor.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_epoll_del")
+    public static native int gpioEpollDel(int epfd, int fd);
+
+    /**
+     * Helper function to wait for line events and drain all queued events of every ready line in one call.
+     *
+     * @param epfd epoll file descriptor.
+     * @param timeoutMs Positive number for a timeout in milliseconds, 0 for a non-blocking poll, or a negative number for a
+     * blocking poll.
+     * @param ids Caller's id of each event.
+     * @param edges Edge of each event.
+     * @param timestamps Timestamp of each event in nanoseconds.
+     * @param max Maximum events to return.
+     * @return Number of events read, 0 on timeout, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_epoll_drain")
+    public static native int gpioEpollDrain(int epfd, int timeoutMs, @JniArg(flags = {NO_IN}) int[] ids, @JniArg(flags = {
+        NO_IN}) int[] edges, @JniArg(cast = "uint64_t *", flags = {NO_IN}) long[] timestamps, int max);
+
+    /**
+     * Helper function to close an epoll set.
+     *
+     * @param epfd epoll file descriptor.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_epoll_close")
+    public static native int gpioEpollClose(int epfd);
+
+    /**
+     * Helper function to wait for edge events and read all queued events with one read. Sequence numbers are only available with
+     * the GPIO v2 uAPI, otherwise 0 is returned.
+     *
+     * @param gpio Valid pointer to an allocated GPIO handle structure.
+     * @param timeoutMs Positive number for a timeout in milliseconds, 0 for a non-blocking poll, or a negative number for a
+     * blocking poll.
+     * @param edges Edge of each event.
+     * @param timestamps Timestamp of each event in nanoseconds.
+     * @param lines Line of each event.
+     * @param seqnos Request sequence number of each event.
+     * @param max Maximum events to return.
+     * @return Number of events read, 0 on timeout, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_read_events")
+    public static native int gpioReadEvents(long gpio, int timeoutMs, @JniArg(flags = {NO_IN}) int[] edges, @JniArg(cast
+            = "uint64_t *", flags = {NO_IN}) long[] timestamps, @JniArg(flags = {NO_IN}) int[] lines, @JniArg(cast = "uint32_t *",
+            flags = {NO_IN}) int[] seqnos, int max);
+
+    /**
+     * Read up to capacity edge events in one call and update the dropped event counter.
+     *
+     * @param gpio Valid pointer to an allocated GPIO handle structure.
+     * @param timeoutMs Positive number for a timeout in milliseconds, 0 for a non-blocking poll, or a negative number for a
+     * blocking poll.
+     * @param events Preallocated events.
+     * @return Number of events read, 0 on timeout, or a negative errno on failure.
+     */
+    public static int gpioReadEvents(final long gpio, final int timeoutMs, final GpioEvents events) {
+        final var rc = gpioReadEvents(gpio, timeoutMs, events.getEdges(), events.getTimestamps(), events.getLines(), events.
+                getSeqnos(), events.capacity());
+        if (rc >= 0) {
+            events.update(rc);
+        }
+        return rc;
+    }
+
     /**
      * Get the configured direction of the GPIO.
      *
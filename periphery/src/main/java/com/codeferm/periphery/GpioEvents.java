@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+
+/**
+ * Preallocated buffer for bulk edge event reads. The kernel keeps a fixed size FIFO of edge events per line request and discards
+ * events when it overflows. Every event carries a sequence number, so gaps between reads are counted as dropped events instead of
+ * silently lost. Sequence numbers require the GPIO v2 uAPI and are 0 otherwise, so nothing is counted.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Data
+public class GpioEvents {
+
+    /**
+     * Event edges (GPIO_EDGE_RISING or GPIO_EDGE_FALLING).
+     */
+    @Setter(AccessLevel.NONE)
+    final private int[] edges;
+    /**
+     * Event timestamps in nanoseconds.
+     */
+    @Setter(AccessLevel.NONE)
+    final private long[] timestamps;
+    /**
+     * Event chip line numbers.
+     */
+    @Setter(AccessLevel.NONE)
+    final private int[] lines;
+    /**
+     * Event sequence numbers (unsigned).
+     */
+    @Setter(AccessLevel.NONE)
+    final private int[] seqnos;
+    /**
+     * Events in last read.
+     */
+    @Setter(AccessLevel.NONE)
+    private int count;
+    /**
+     * Total events dropped by kernel.
+     */
+    private long dropped;
+    /**
+     * Last sequence number seen or 0 if none.
+     */
+    @Setter(AccessLevel.NONE)
+    private int lastSeqno;
+
+    /**
+     * Create events buffer.
+     *
+     * @param capacity Maximum events per read.
+     */
+    public GpioEvents(final int capacity) {
+        edges = new int[capacity];
+        timestamps = new long[capacity];
+        lines = new int[capacity];
+        seqnos = new int[capacity];
+    }
+
+    /**
+     * Return maximum events per read.
+     *
+     * @return Capacity.
+     */
+    public int capacity() {
+        return edges.length;
+    }
+
+    /**
+     * Set count of events read and add sequence number gaps to dropped count.
+     *
+     * @param count Events read.
+     */
+    public void update(final int count) {
+        this.count = count;
+        for (int i = 0; i < count; i++) {
+            final var seqno = seqnos[i];
+            if (seqno != 0) {
+                if (lastSeqno != 0) {
+                    // Unsigned difference handles wrap
+                    dropped += Integer.toUnsignedLong(seqno - lastSeqno - 1);
+                }
+                lastSeqno = seqno;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
+import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
+import org.fusesource.hawtjni.runtime.JniClass;
+import org.fusesource.hawtjni.runtime.JniField;
+import org.fusesource.hawtjni.runtime.JniMethod;
+import org.fusesource.hawtjni.runtime.Library;
+import static org.fusesource.hawtjni.runtime.MethodFlag.CONSTANT_INITIALIZER;
+
+/**
+ * Multiple lines of a GPIO chip requested as one group using the GPIO v2 character device uAPI. All lines in the group are read
+ * or written with a single ioctl, so an 8 bit parallel bus or a bank of buttons costs one JNI call instead of one per line. Bit n
+ * of a mask or value is line n of the group (not the chip line number).
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Data
+@JniClass
+public class GpioLineGroup implements AutoCloseable {
+
+    /**
+     * Maximum lines in a group (GPIO_V2_LINES_MAX).
+     */
+    public static final int GPIO_LINES_MAX = 64;
+    /**
+     * periphery library.
+     */
+    private static final Library LIBRARY = new Library("periphery", GpioLineGroup.class);
+    /**
+     * Line request file descriptor, -1 once closed.
+     */
+    @Setter(AccessLevel.NONE)
+    private int fd;
+    /**
+     * Chip line numbers in group order.
+     */
+    @Setter(AccessLevel.NONE)
+    final private int[] lines;
+    /**
+     * Mask with a bit set for every line in group.
+     */
+    @Setter(AccessLevel.NONE)
+    final private long allMask;
+    /**
+     * Preallocated read value.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    final private long[] bits = new long[1];
+
+    /**
+     * Load library.
+     */
+    static {
+        LIBRARY.load();
+        init();
+    }
+
+    /**
+     * Load constants.
+     */
+    @JniMethod(flags = {CONSTANT_INITIALIZER})
+    private static native void init();
+    /**
+     * gpio_v2_line_flag values.
+     */
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_ACTIVE_LOW;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_INPUT;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_OUTPUT;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_EDGE_RISING;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_EDGE_FALLING;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_OPEN_DRAIN;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_OPEN_SOURCE;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_BIAS_PULL_UP;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_BIAS_DISABLED;
+    @JniField(flags = {CONSTANT})
+    public static long GPIO_V2_LINE_FLAG_EVENT_CLOCK_REALTIME;
+
+    /**
+     * Request lines of GPIO chip as a group.
+     *
+     * @param path GPIO chip character device path.
+     * @param lines GPIO line numbers.
+     * @param flags gpio_v2_line_flag values bitwise-ORed (GPIO_V2_LINE_FLAG_INPUT or GPIO_V2_LINE_FLAG_OUTPUT, bias, etc.)
+     * @param values Initial output values if GPIO_V2_LINE_FLAG_OUTPUT is set.
+     * @param consumer Consumer label.
+     * @param eventBufferSize Kernel edge event buffer size or 0 for default of 16 events per line.
+     */
+    public GpioLineGroup(final String path, final int[] lines, final long flags, final long values, final String consumer,
+            final int eventBufferSize) {
+        if (lines.length == 0 || lines.length > GPIO_LINES_MAX) {
+            throw new IllegalArgumentException(String.format("Line count must be 1 to %d", GPIO_LINES_MAX));
+        }
+        checkFlags(flags);
+        this.lines = lines.clone();
+        allMask = lines.length == GPIO_LINES_MAX ? -1L : (1L << lines.length) - 1;
+        fd = gpioLinesOpen(path, this.lines, this.lines.length, flags, values, consumer, eventBufferSize);
+        if (fd < 0) {
+            throw new RuntimeException(String.format("Requesting %d lines of %s failed: errno %d", lines.length, path, -fd));
+        }
+    }
+
+    /**
+     * Request lines of GPIO chip as a group with default event buffer size.
+     *
+     * @param path GPIO chip character device path.
+     * @param lines GPIO line numbers.
+     * @param flags gpio_v2_line_flag values bitwise-ORed (GPIO_V2_LINE_FLAG_INPUT or GPIO_V2_LINE_FLAG_OUTPUT, bias, etc.)
+     * @param values Initial output values if GPIO_V2_LINE_FLAG_OUTPUT is set.
+     * @param consumer Consumer label.
+     */
+    public GpioLineGroup(final String path, final int[] lines, final long flags, final long values, final String consumer) {
+        this(path, lines, flags, values, consumer, 0);
+    }
+
+    /**
+     * Request lines of GPIO chip as a group with default consumer label.
+     *
+     * @param path GPIO chip character device path.
+     * @param lines GPIO line numbers.
+     * @param flags gpio_v2_line_flag values bitwise-ORed.
+     */
+    public GpioLineGroup(final String path, final int[] lines, final long flags) {
+        this(path, lines, flags, 0, GpioLineGroup.class.getSimpleName());
+    }
+
+    /**
+     * Check flag combination with the same rules as the kernel, so a bad request fails before the chip is opened: one direction,
+     * edges only on inputs, one drive only on outputs and at most one bias.
+     *
+     * @param flags gpio_v2_line_flag values bitwise-ORed.
+     * @throws IllegalArgumentException If flags conflict.
+     */
+    public static void checkFlags(final long flags) {
+        final var input = (flags & GPIO_V2_LINE_FLAG_INPUT) != 0;
+        final var output = (flags & GPIO_V2_LINE_FLAG_OUTPUT) != 0;
+        if (input == output) {
+            throw new IllegalArgumentException(String.format("Flags 0x%x must have exactly one of input or output", flags));
+        }
+        if (!input && (flags & (GPIO_V2_LINE_FLAG_EDGE_RISING | GPIO_V2_LINE_FLAG_EDGE_FALLING)) != 0) {
+            throw new IllegalArgumentException(String.format("Flags 0x%x request edges on an output", flags));
+        }
+        final var drive = flags & (GPIO_V2_LINE_FLAG_OPEN_DRAIN | GPIO_V2_LINE_FLAG_OPEN_SOURCE);
+        if (drive != 0 && (!output || Long.bitCount(drive) > 1)) {
+            throw new IllegalArgumentException(String.format("Flags 0x%x need output and one drive", flags));
+        }
+        if (Long.bitCount(flags & (GPIO_V2_LINE_FLAG_BIAS_PULL_UP | GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN
+                | GPIO_V2_LINE_FLAG_BIAS_DISABLED)) > 1) {
+            throw new IllegalArgumentException(String.format("Flags 0x%x have more than one bias", flags));
+        }
+    }
+
+    /**
+     * Read all lines in group.
+     *
+     * @return Line values, bit n is line n of group.
+     */
+    public long getValues() {
+        return getValues(allMask);
+    }
+
+    /**
+     * Read lines selected by mask.
+     *
+     * @param mask Lines to read, bit n is line n of group.
+     * @return Line values, bit n is line n of group.
+     */
+    public long getValues(final long mask) {
+        checkOpen();
+        final var rc = gpioLinesGetValues(fd, mask, bits);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Get values failed: errno %d", -rc));
+        }
+        return bits[0];
+    }
+
+    /**
+     * Write lines selected by mask. Lines not in mask are left unchanged.
+     *
+     * @param mask Lines to write, bit n is line n of group.
+     * @param values Line values, bit n is line n of group.
+     */
+    public void setValues(final long mask, final long values) {
+        checkOpen();
+        final var rc = gpioLinesSetValues(fd, mask, values);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Set values failed: errno %d", -rc));
+        }
+    }
+
+    /**
+     * Write all lines in group.
+     *
+     * @param values Line values, bit n is line n of group.
+     */
+    public void setValues(final long values) {
+        setValues(allMask, values);
+    }
+
+    /**
+     * Read up to capacity edge events of all lines in one call and update the dropped event counter. Lines must be requested with
+     * GPIO_V2_LINE_FLAG_EDGE_RISING and/or GPIO_V2_LINE_FLAG_EDGE_FALLING.
+     *
+     * @param timeoutMs Positive number for a timeout in milliseconds, 0 for a non-blocking poll, or a negative number for a
+     * blocking poll.
+     * @param events Preallocated events.
+     * @return Number of events read, 0 on timeout.
+     */
+    public int readEvents(final int timeoutMs, final GpioEvents events) {
+        checkOpen();
+        final var rc = gpioLinesReadEvents(fd, timeoutMs, events.getEdges(), events.getTimestamps(), events.getLines(), events.
+                getSeqnos(), events.capacity());
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Read events failed: errno %d", -rc));
+        }
+        events.update(rc);
+        return rc;
+    }
+
+    /**
+     * Throw if line request was released. poll ignores fd -1, so a blocking readEvents would otherwise never return.
+     */
+    private void checkOpen() {
+        if (fd < 0) {
+            throw new IllegalStateException("Line group closed");
+        }
+    }
+
+    /**
+     * Release line request. Later calls do nothing.
+     */
+    @Override
+    public void close() {
+        if (fd >= 0) {
+            gpioLinesClose(fd);
+            fd = -1;
+        }
+    }
+
+    /**
+     * Request count lines of GPIO chip as one line request.
+     *
+     * @param path GPIO chip character device path.
+     * @param lines GPIO line numbers.
+     * @param count Number of lines.
+     * @param flags gpio_v2_line_flag values bitwise-ORed.
+     * @param values Initial output values.
+     * @param consumer Consumer label.
+     * @param eventBufferSize Kernel edge event buffer size or 0 for default.
+     * @return Line request file descriptor, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_lines_open")
+    public static native int gpioLinesOpen(String path, @JniArg(cast = "const uint32_t *", flags = {NO_OUT}) int[] lines,
+            int count, long flags, long values, String consumer, int eventBufferSize);
+
+    /**
+     * Get values of lines selected by mask with one ioctl.
+     *
+     * @param fd Line request file descriptor.
+     * @param mask Lines to read.
+     * @param bits Line values.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_lines_get_values")
+    public static native int gpioLinesGetValues(int fd, long mask, @JniArg(cast = "uint64_t *", flags = {NO_IN}) long[] bits);
+
+    /**
+     * Set values of lines selected by mask with one ioctl.
+     *
+     * @param fd Line request file descriptor.
+     * @param mask Lines to write.
+     * @param bits Line values.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_lines_set_values")
+    public static native int gpioLinesSetValues(int fd, long mask, long bits);
+
+    /**
+     * Wait for edge events and read all queued events with one read.
+     *
+     * @param fd Line request file descriptor.
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @param edges Edge of each event.
+     * @param timestamps Timestamp of each event in nanoseconds.
+     * @param lines Chip line of each event.
+     * @param seqnos Request sequence number of each event.
+     * @param max Maximum events to return.
+     * @return Number of events read, 0 on timeout, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_lines_read_events")
+    public static native int gpioLinesReadEvents(int fd, int timeoutMs, @JniArg(flags = {NO_IN}) int[] edges, @JniArg(cast
+            = "uint64_t *", flags = {NO_IN}) long[] timestamps, @JniArg(flags = {NO_IN}) int[] lines, @JniArg(cast = "uint32_t *",
+            flags = {NO_IN}) int[] seqnos, int max);
+
+    /**
+     * Release line request.
+     *
+     * @param fd Line request file descriptor.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "gpio_lines_close")
+    public static native int gpioLinesClose(int fd);
+}
@@ -4,12 +4,18 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.bufferAddress;
 import static com.codeferm.periphery.Common.jString;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Setter;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
 import org.fusesource.hawtjni.runtime.ClassFlag;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -178,18 +184,11 @@ public class I2c implements AutoCloseable {
      * @return 0 on success, or a negative I2C error code on failure.
      */
     public static int i2cReadWord8(final long i2c, final short addr, final short reg, final int regVal[]) {
-        final var highBuf = new short[1];
-        var error = i2cReadReg8(i2c, addr, reg, highBuf);
+        final var buf = new byte[2];
+        // High and low byte in one auto-increment read
+        final var error = i2cReadReg8(i2c, addr, reg, buf);
         if (error == I2C_SUCCESS) {
-            final var lowBuf = new short[1];
-            // Increment register for next read
-            error = i2cReadReg8(i2c, addr, (short) (reg + 1), lowBuf);
-            final int value = (highBuf[0] << 8) + lowBuf[0];
-            if (value >= 0x8000) {
-                regVal[0] = -((65535 - value) + 1);
-            } else {
-                regVal[0] = value;
-            }
+            regVal[0] = (short) ((buf[0] << 8) | (buf[1] & 0xff));
         }
         return error;
     }
@@ -252,6 +251,36 @@ public class I2c implements AutoCloseable {
     @JniMethod(accessor = "i2c_read8")
     public static native int i2cRead8(long i2c, short addr, short reg, byte[] buf, long len);
 
+    /**
+     * Helper function to read from 8 bit address into native memory at buf. No Java array is copied.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Register.
+     * @param buf Pointer to buffer.
+     * @param len Buffer length.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    @JniMethod(accessor = "i2c_read8")
+    public static native int i2cRead8Direct(long i2c, short addr, short reg, @JniArg(cast = "uint8_t *") long buf, long len);
+
+    /**
+     * Read buf.remaining() bytes from i2c 8 bit address into direct buffer at its position. Position is advanced to limit on success.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Register.
+     * @param buf Direct read buffer.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public static int i2cRead8(final long i2c, final short addr, final short reg, final ByteBuffer buf) {
+        final var rc = i2cRead8Direct(i2c, addr, reg, bufferAddress(buf), buf.remaining());
+        if (rc == I2C_SUCCESS) {
+            buf.position(buf.limit());
+        }
+        return rc;
+    }
+
     /**
      * Helper function to read from 16 bit address.
      *
@@ -309,6 +338,88 @@ public class I2c implements AutoCloseable {
     @JniMethod(accessor = "i2c_transfer")
     public static native int i2cTransfer(long i2c, I2cMsg msgs, long count);
 
+    /**
+     * Helper function to read len bytes starting at 8 bit register into buf at off in one auto-increment transaction. buf is only
+     * copied out, the range is not checked.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Starting register.
+     * @param buf Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    @JniMethod(accessor = "i2c_read_block8")
+    private static native int i2cReadBlock8Native(long i2c, short addr, short reg, @JniArg(cast = "uint8_t *", flags = {NO_IN})
+            byte[] buf, int off, long len);
+
+    /**
+     * Read len bytes starting at 8 bit register into buf at off in one auto-increment transaction.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Starting register.
+     * @param buf Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return 0 on success, or a negative I2C error code on failure.
+     */
+    public static int i2cReadBlock8(final long i2c, final short addr, final short reg, final byte[] buf, final int off,
+            final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        return i2cReadBlock8Native(i2c, addr, reg, buf, off, len);
+    }
+
+    /**
+     * Helper function to write len bytes from buf at off starting at 8 bit register in one auto-increment transaction. buf is only
+     * copied in, the range is not checked.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Starting register.
+     * @param buf Source.
+     * @param off Offset in source.
+     * @param len Byte count (up to 4096).
+     * @return 0 on success, I2C_ERROR_ARG if len is over 4096 (i2cErrMessage is not updated) or a negative I2C error code on
+     * failure.
+     */
+    @JniMethod(accessor = "i2c_write_block8")
+    private static native int i2cWriteBlock8Native(long i2c, short addr, short reg,
+            @JniArg(cast = "const uint8_t *", flags = {NO_OUT}) byte[] buf, int off, long len);
+
+    /**
+     * Write len bytes from buf at off starting at 8 bit register in one auto-increment transaction.
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param addr Address.
+     * @param reg Starting register.
+     * @param buf Source.
+     * @param off Offset in source.
+     * @param len Byte count (up to 4096).
+     * @return 0 on success, I2C_ERROR_ARG if len is over 4096 or a negative I2C error code on failure.
+     */
+    public static int i2cWriteBlock8(final long i2c, final short addr, final short reg, final byte[] buf, final int off,
+            final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        return i2cWriteBlock8Native(i2c, addr, reg, buf, off, len);
+    }
+
+    /**
+     * Helper function to transfer count messages in one I2C_RDWR ioctl. Each message is described by 4 ints in desc: address, flags,
+     * length and offset of its buffer in data (see I2cTransaction).
+     *
+     * @param i2c Valid pointer to an allocated I2C handle structure.
+     * @param desc Pointer to message descriptors.
+     * @param count Number of messages (up to 42).
+     * @param data Pointer to message buffers.
+     * @return 0 on success, I2C_ERROR_ARG if count is not 1 to 42 (i2cErrMessage is not updated) or a negative I2C error code on
+     * failure.
+     */
+    @JniMethod(accessor = "i2c_transfer_packed")
+    public static native int i2cTransferPacked(long i2c, @JniArg(cast = "const int32_t *") long desc, int count, @JniArg(cast
+            = "uint8_t *") long data);
+
     /**
      * Close the I2C.
      *
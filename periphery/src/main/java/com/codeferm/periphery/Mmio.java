@@ -5,10 +5,16 @@ package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
 import static com.codeferm.periphery.Common.jString;
+import static com.codeferm.periphery.Common.newDirectByteBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Setter;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -115,6 +121,17 @@ public class Mmio implements AutoCloseable {
         mmioFree(handle);
     }
 
+    /**
+     * Return a native order direct ByteBuffer view of the mapped physical memory. Buffer offsets are relative to the base address
+     * the MMIO handle was opened with, so they match the offsets used by mmioRead32 and mmioWrite32. Reads and writes through the
+     * buffer do not cross JNI. The buffer is only valid until the handle is closed.
+     *
+     * @return Direct ByteBuffer over mapped memory.
+     */
+    public ByteBuffer asByteBuffer() {
+        return newDirectByteBuffer(mmioPtr(handle), mmioSize(handle)).order(ByteOrder.nativeOrder());
+    }
+
     /**
      * Allocate a MMIO handle. Returns a valid handle on success, or NULL on failure.
      *
@@ -253,6 +270,116 @@ public class Mmio implements AutoCloseable {
     @JniMethod(accessor = "mmio_write")
     public static final native int mmioWrite(long mmio, long offset, byte[] buf, long len);
 
+    /**
+     * Helper function to read count 32 bit registers starting at offset with one call.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset (32 bit aligned).
+     * @param dst Register values.
+     * @param count Number of registers.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_read32_block")
+    public static final native int mmioRead32Block(long mmio, long offset, @JniArg(cast = "uint32_t *", flags = {NO_IN}) int[] dst,
+            int count);
+
+    /**
+     * Helper function to write count 32 bit registers starting at offset with one call.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset (32 bit aligned).
+     * @param src Register values.
+     * @param count Number of registers.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_write32_block")
+    public static final native int mmioWrite32Block(long mmio, long offset, @JniArg(cast = "const uint32_t *", flags = {NO_OUT})
+            int[] src, int count);
+
+    /**
+     * Helper function to sample a 32 bit register in a tight native loop. Samples are packed so bit n is set if masks[n] was set
+     * in the register.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Register offset.
+     * @param masks Pin masks (1 to 32).
+     * @param pins Number of masks.
+     * @param samples Packed samples.
+     * @param count Number of samples.
+     * @param intervalNs Sample interval in nanoseconds or 0 for as fast as possible.
+     * @param elapsed Capture time in nanoseconds.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_capture")
+    public static final native int mmioCapture(long mmio, long offset, @JniArg(cast = "const uint32_t *", flags = {NO_OUT})
+            int[] masks, int pins, @JniArg(cast = "uint32_t *", flags = {NO_IN}) int[] samples, int count, long intervalNs,
+            @JniArg(cast = "uint64_t *", flags = {NO_IN}) long[] elapsed);
+
+    /**
+     * Helper function to play a waveform program with busy-wait timing. Each step is 4 ints: opcode (0 write, 1 or, 2 and, 3 xor),
+     * register offset, value and delay in nanoseconds until next step.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param program Waveform steps.
+     * @param steps Number of steps.
+     * @param repeat Number of times to play program.
+     * @param elapsed Play time in nanoseconds.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_waveform")
+    public static final native int mmioWaveform(long mmio, @JniArg(cast = "const int32_t *", flags = {NO_OUT}) int[] program,
+            int steps, int repeat, @JniArg(cast = "uint64_t *", flags = {NO_IN}) long[] elapsed);
+
+    /**
+     * Helper function to watch a block of 32 bit registers. Samples every intervalNs for durationNs and writes only changed words
+     * with timestamps to a memory mapped trace file (see MmioTrace). Initial values are recorded at time 0.
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param offset Starting offset (32 bit aligned).
+     * @param words Number of registers.
+     * @param intervalNs Sample interval in nanoseconds, 0 for as fast as possible.
+     * @param durationNs Watch time in nanoseconds.
+     * @param path Trace file path.
+     * @param maxRecords Maximum records to write.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_watch")
+    public static final native int mmioWatch(long mmio, long offset, int words, long intervalNs, long durationNs, final String path,
+            long maxRecords);
+
+    /**
+     * Helper function to start a software PWM thread. Each channel is 6 ints: on opcode, on offset, on value, off opcode, off
+     * offset and off value (see mmioWaveform).
+     *
+     * @param mmio Valid pointer to an allocated MMIO handle structure.
+     * @param channels Channel on and off steps.
+     * @param count Number of channels.
+     * @param tickNs Tick in nanoseconds.
+     * @param periodTicks Ticks per PWM period.
+     * @return PWM handle or 0 on failure.
+     */
+    @JniMethod(accessor = "mmio_pwm_start")
+    public static final native long mmioPwmStart(long mmio, @JniArg(cast = "const int32_t *", flags = {NO_OUT}) int[] channels,
+            int count, int tickNs, int periodTicks);
+
+    /**
+     * Helper function to return duty cycle array shared with the PWM thread. Duty cycles are unsigned ints in ticks.
+     *
+     * @param pwm PWM handle.
+     * @return Pointer to duty cycle array.
+     */
+    @JniMethod(accessor = "mmio_pwm_duty")
+    public static final native long mmioPwmDuty(@JniArg(cast = "void *") long pwm);
+
+    /**
+     * Helper function to stop the PWM thread, turn channels off and free the PWM handle.
+     *
+     * @param pwm PWM handle.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "mmio_pwm_stop")
+    public static final native int mmioPwmStop(@JniArg(cast = "void *") long pwm);
+
     /**
      * Unmap mapped physical memory.
      *
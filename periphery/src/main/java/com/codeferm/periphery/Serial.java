@@ -4,11 +4,15 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.bufferAddress;
 import static com.codeferm.periphery.Common.jString;
+import java.nio.ByteBuffer;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Setter;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -165,6 +169,37 @@ public class Serial implements AutoCloseable {
     @JniMethod(accessor = "serial_read")
     public static native int serialRead(long serial, byte[] buf, int len, int timeoutMs);
 
+    /**
+     * Read up to len number of bytes from the serial port into native memory at buf with the specified millisecond timeout. No Java
+     * array is copied.
+     *
+     * @param serial Valid pointer to an allocated Serial handle structure.
+     * @param buf Pointer to read buffer.
+     * @param len Amount of data to read.
+     * @param timeoutMs can be positive for a timeout in milliseconds, 0 for a non-blocking read, or a negative number for a
+     * blocking read.
+     * @return number of bytes read on success, 0 on timeout, or a negative Serial error code on failure.
+     */
+    @JniMethod(accessor = "serial_read")
+    public static native int serialReadDirect(long serial, @JniArg(cast = "uint8_t *") long buf, int len, int timeoutMs);
+
+    /**
+     * Read up to buf.remaining() bytes from the serial port into direct buffer at its position. Position is advanced by bytes read.
+     *
+     * @param serial Valid pointer to an allocated Serial handle structure.
+     * @param buf Direct read buffer.
+     * @param timeoutMs can be positive for a timeout in milliseconds, 0 for a non-blocking read, or a negative number for a
+     * blocking read.
+     * @return number of bytes read on success, 0 on timeout, or a negative Serial error code on failure.
+     */
+    public static int serialRead(final long serial, final ByteBuffer buf, final int timeoutMs) {
+        final var rc = serialReadDirect(serial, bufferAddress(buf), buf.remaining(), timeoutMs);
+        if (rc > 0) {
+            buf.position(buf.position() + rc);
+        }
+        return rc;
+    }
+
     /**
      * Write len number of bytes from the buf buffer to the serial port.
      *
@@ -176,6 +211,32 @@ public class Serial implements AutoCloseable {
     @JniMethod(accessor = "serial_write")
     public static native int serialWrite(long serial, byte[] buf, int len);
 
+    /**
+     * Write len number of bytes from native memory at buf to the serial port. No Java array is copied.
+     *
+     * @param serial Valid pointer to an allocated Serial handle structure.
+     * @param buf Pointer to write buffer.
+     * @param len Amount of data to write.
+     * @return Number of bytes written on success, or a negative Serial error code on failure.
+     */
+    @JniMethod(accessor = "serial_write")
+    public static native int serialWriteDirect(long serial, @JniArg(cast = "const uint8_t *") long buf, int len);
+
+    /**
+     * Write direct buffer position to limit to the serial port. Position is advanced by bytes written.
+     *
+     * @param serial Valid pointer to an allocated Serial handle structure.
+     * @param buf Direct write buffer.
+     * @return Number of bytes written on success, or a negative Serial error code on failure.
+     */
+    public static int serialWrite(final long serial, final ByteBuffer buf) {
+        final var rc = serialWriteDirect(serial, bufferAddress(buf), buf.remaining());
+        if (rc > 0) {
+            buf.position(buf.position() + rc);
+        }
+        return rc;
+    }
+
     /**
      * Flush the write buffer of the serial port (i.e. force its write immediately).
      *
@@ -362,6 +423,70 @@ public class Serial implements AutoCloseable {
     @JniMethod(accessor = "serial_fd")
     public static native int serialFd(long serial);
 
+    /**
+     * Wait up to timeoutMs for input on fd, then read what is available up to len into native memory at buf with one read. Unlike
+     * serialRead this does not wait for len bytes.
+     *
+     * @param fd File descriptor from serialFd or serialPtyOpen.
+     * @param buf Pointer to read buffer.
+     * @param len Maximum bytes to read.
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @return Bytes read, 0 on timeout or negative errno (-EPIPE on hangup).
+     */
+    @JniMethod(accessor = "serial_fd_read")
+    public static native int serialFdRead(int fd, @JniArg(cast = "uint8_t *") long buf, int len, int timeoutMs);
+
+    /**
+     * Write len bytes from native memory at buf to fd.
+     *
+     * @param fd File descriptor from serialFd or serialPtyOpen.
+     * @param buf Pointer to write buffer.
+     * @param len Bytes to write.
+     * @return Bytes written or negative errno.
+     */
+    @JniMethod(accessor = "serial_fd_write")
+    public static native int serialFdWrite(int fd, @JniArg(cast = "const uint8_t *") long buf, int len);
+
+    /**
+     * Open pseudo-terminal pair in raw mode for testing and simulation. fds[0] is the master and fds[1] a slave fd held open until
+     * closed, so the master never sees a hangup. The slave path (e.g. "/dev/pts/3") can be opened with Serial or Uart.
+     *
+     * @param fds Master and slave fd.
+     * @param name Slave path.
+     * @param len Length of name.
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "serial_pty_open")
+    public static native int serialPtyOpen(@JniArg(flags = {NO_IN}) int[] fds, @JniArg(cast = "char *", flags = {NO_IN}) byte[] name,
+            int len);
+
+    /**
+     * Close fd opened by serialPtyOpen.
+     *
+     * @param fd File descriptor.
+     * @return 0 on success or negative errno.
+     */
+    @JniMethod(accessor = "serial_fd_close")
+    public static native int serialFdClose(int fd);
+
+    /**
+     * Modbus RTU request and response timed in native code. Input is flushed and the line is kept silent for silenceUs before the
+     * request is sent and drained. The response ends when rxLen bytes arrive or the line is silent for gapUs after the first byte.
+     *
+     * @param fd File descriptor from serialFd.
+     * @param tx Pointer to request frame including CRC.
+     * @param txLen Request length.
+     * @param rx Pointer to response buffer.
+     * @param rxLen Expected response length, 0 for none.
+     * @param timeoutMs Time to wait for first response byte.
+     * @param silenceUs Silence before request in microseconds.
+     * @param gapUs Silence that ends response in microseconds.
+     * @return Bytes received, 0 on timeout or negative errno.
+     */
+    @JniMethod(accessor = "serial_rtu_transfer")
+    public static native int serialRtuTransfer(int fd, @JniArg(cast = "const uint8_t *") long tx, int txLen, @JniArg(cast
+            = "uint8_t *") long rx, int rxLen, int timeoutMs, int silenceUs, int gapUs);
+
     /**
      * Return a string representation of the serial handle.
      *
@@ -4,11 +4,17 @@
 package com.codeferm.periphery;
 
 import static com.codeferm.periphery.Common.MAX_CHAR_ARRAY_LEN;
+import static com.codeferm.periphery.Common.bufferAddress;
 import static com.codeferm.periphery.Common.jString;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Setter;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_IN;
+import static org.fusesource.hawtjni.runtime.ArgFlag.NO_OUT;
 import static org.fusesource.hawtjni.runtime.FieldFlag.CONSTANT;
+import org.fusesource.hawtjni.runtime.JniArg;
 import org.fusesource.hawtjni.runtime.JniClass;
 import org.fusesource.hawtjni.runtime.JniField;
 import org.fusesource.hawtjni.runtime.JniMethod;
@@ -212,6 +218,127 @@ public class Spi implements AutoCloseable {
     @JniMethod(accessor = "spi_transfer")
     public static native int spiTransfer(long spi, byte[] txBuf, byte[] rxBuf, long len);
 
+    /**
+     * Helper function to return spidev buffer size from /sys/module/spidev/parameters/bufsiz (4096 if unavailable). Transfers larger
+     * than this are split into bufsiz chunks.
+     *
+     * @return Buffer size in bytes.
+     */
+    @JniMethod(accessor = "spi_bufsiz")
+    public static native int spiBufSiz();
+
+    /**
+     * Helper function to submit count struct spi_ioc_transfer entries as one SPI_IOC_MESSAGE ioctl (see SpiTransaction).
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param xfers Pointer to transfer array.
+     * @param count Number of transfers.
+     * @return Total bytes transferred on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_message")
+    public static native int spiMessage(long spi, @JniArg(cast = "struct spi_ioc_transfer *") long xfers, int count);
+
+    /**
+     * Helper function to shift out len bytes of buf starting at off. Receive buffer is NULL and buf is only copied in, so nothing
+     * is copied back to Java. Transfers larger than spidev bufsiz are split into chunks.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param buf Transmit buffer.
+     * @param off Offset in buffer.
+     * @param len Byte count.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_write")
+    public static native int spiWriteRange(long spi, @JniArg(cast = "const uint8_t *", flags = {NO_OUT}) byte[] buf, int off,
+            long len);
+
+    /**
+     * Shift out len bytes of buf starting at off without receiving.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param buf Transmit buffer.
+     * @param off Offset in buffer.
+     * @param len Byte count.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    public static int spiWrite(final long spi, final byte[] buf, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        return spiWriteRange(spi, buf, off, len);
+    }
+
+    /**
+     * Helper function to shift out len bytes of txBuf starting at txOff while shifting in to rxBuf starting at rxOff. txBuf is only
+     * copied in and rxBuf is only copied out. Transfers larger than spidev bufsiz are split into chunks.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer.
+     * @param txOff Offset in transmit buffer.
+     * @param rxBuf Receive buffer.
+     * @param rxOff Offset in receive buffer.
+     * @param len Byte count.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_transfer_range")
+    public static native int spiTransferRange(long spi, @JniArg(cast = "const uint8_t *", flags = {NO_OUT}) byte[] txBuf, int txOff,
+            @JniArg(cast = "uint8_t *", flags = {NO_IN}) byte[] rxBuf, int rxOff, long len);
+
+    /**
+     * Shift out len bytes of txBuf starting at txOff while shifting in to rxBuf starting at rxOff.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Transmit buffer.
+     * @param txOff Offset in transmit buffer.
+     * @param rxBuf Receive buffer.
+     * @param rxOff Offset in receive buffer.
+     * @param len Byte count.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    public static int spiTransfer(final long spi, final byte[] txBuf, final int txOff, final byte[] rxBuf, final int rxOff,
+            final int len) {
+        Objects.checkFromIndexSize(txOff, len, txBuf.length);
+        Objects.checkFromIndexSize(rxOff, len, rxBuf.length);
+        return spiTransferRange(spi, txBuf, txOff, rxBuf, rxOff, len);
+    }
+
+    /**
+     * Helper function to shift out len bytes from native memory at txBuf, while shifting in len bytes to native memory at rxBuf. No
+     * Java array is copied. Transfers larger than spidev bufsiz are split into chunks.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Pointer to transmit buffer.
+     * @param rxBuf Pointer to receive buffer or NULL to discard.
+     * @param len Byte count.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    @JniMethod(accessor = "spi_transfer_chunked")
+    public static native int spiTransferDirect(long spi, @JniArg(cast = "const uint8_t *") long txBuf, @JniArg(cast = "uint8_t *")
+            long rxBuf, long len);
+
+    /**
+     * Shift out txBuf position to limit while shifting in to rxBuf at its position. Buffers must be direct and positions are
+     * advanced on success.
+     *
+     * @param spi A valid pointer to an allocated SPI handle structure.
+     * @param txBuf Direct transmit buffer.
+     * @param rxBuf Direct receive buffer with at least txBuf.remaining() bytes remaining or null to discard.
+     * @return 0 on success, or a negative errno on failure.
+     */
+    public static int spiTransfer(final long spi, final ByteBuffer txBuf, final ByteBuffer rxBuf) {
+        final var len = txBuf.remaining();
+        if (rxBuf != null && rxBuf.remaining() < len) {
+            throw new IllegalArgumentException(String.format("Receive buffer has %d bytes remaining, %d needed", rxBuf.remaining(),
+                    len));
+        }
+        final var rc = spiTransferDirect(spi, bufferAddress(txBuf), rxBuf == null ? 0 : bufferAddress(rxBuf), len);
+        if (rc == SPI_SUCCESS) {
+            txBuf.position(txBuf.limit());
+            if (rxBuf != null) {
+                rxBuf.position(rxBuf.position() + len);
+            }
+        }
+        return rc;
+    }
+
     /**
      * Close the spidev device.
      *
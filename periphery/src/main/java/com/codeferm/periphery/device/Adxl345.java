@@ -118,29 +118,17 @@ public class Adxl345 implements AutoCloseable {
      * Recalculates based on the number of bits and the G-range.
      */
     public void refreshScalingFactor() {
-        final var range = getRange();
-        final var resolution = getFullResolution();
+        // Range and resolution share DATA_FORMAT, so read it once
+        final var buf = new short[1];
+        i2cBus.readReg8(address, (short) 0x31, buf);
+        final var range = buf[0] & 0x03;
+        final var resolution = (buf[0] & 0x08) == 0x08;
         final var bits = resolution ? 10 + range : 10;
         final var gRange = 4f * (float) Math.pow(2, range);
         final var bitRange = (float) Math.pow(2, bits);
         this.scalingFactor = gRange / bitRange;
     }
 
-    /**
-     * Internal helper to convert two bytes into a signed 10-bit integer.
-     *
-     * @param lowByte  Lower 8 bits of the axis data.
-     * @param highByte Upper bits of the axis data.
-     * @return Signed integer value of the axis.
-     */
-    private int bytesToInt(final byte lowByte, final byte highByte) {
-        var value = ((highByte & 0x03) * 256 + (lowByte & 0xff));
-        if (value > 511) {
-            value -= 1024;
-        }
-        return value;
-    }
-
     /**
      * Reads x, y, z axes and returns scaled acceleration in m/s^2.
      * Data is read starting from register DATAX0 (0x32).
@@ -149,12 +137,12 @@ public class Adxl345 implements AutoCloseable {
      */
     public Map<String, Float> read() {
         final var data = new byte[6];
-        // Read 6 bytes starting at DATAX0 (0x32)
-        i2cBus.readReg8(address, (short) 0x32, data);
+        // Read 6 bytes starting at DATAX0 (0x32) in one transaction
+        i2cBus.readBlock(address, (short) 0x32, data, 0, data.length);
         final Map<String, Float> map = new HashMap<>();
-        map.put("x", bytesToInt(data[0], data[1]) * scalingFactor * 9.8f);
-        map.put("y", bytesToInt(data[2], data[3]) * scalingFactor * 9.8f);
-        map.put("z", bytesToInt(data[4], data[5]) * scalingFactor * 9.8f);
+        map.put("x", I2cBus.getShortLE(data, 0) * scalingFactor * 9.8f);
+        map.put("y", I2cBus.getShortLE(data, 2) * scalingFactor * 9.8f);
+        map.put("z", I2cBus.getShortLE(data, 4) * scalingFactor * 9.8f);
         return map;
     }
 
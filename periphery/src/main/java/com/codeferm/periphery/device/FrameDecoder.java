@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming frame decoder used by FrameReader. A decoder scans the receive buffer in place and points a reusable view at the next
+ * frame, so decoding allocates nothing. Escaped framings are unescaped in place, since decoded frames are never longer than their
+ * encoding. Decoders may keep scan state between calls and are not shared between readers. See FrameDecoders for implementations.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface FrameDecoder {
+
+    /**
+     * Find next frame in in from position to limit. When a frame is found or a malformed frame is skipped, position is advanced past
+     * its bytes. Bytes between position and limit may be rewritten.
+     *
+     * @param in Receive buffer.
+     * @param frame View of the same buffer, set to the frame on success.
+     * @return 1 if frame was found, 0 if more input is needed or -1 if a malformed frame was skipped.
+     */
+    int decode(ByteBuffer in, ByteBuffer frame);
+
+    /**
+     * Forget scan state after the reader discards buffered input.
+     */
+    default void reset() {
+    }
+}
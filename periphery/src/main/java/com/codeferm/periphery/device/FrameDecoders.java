@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Common FrameDecoder implementations: delimited lines, SLIP (RFC 1055), COBS and length prefixed frames. Each call returns a new
+ * decoder with its own scan state.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class FrameDecoders {
+
+    /**
+     * SLIP special characters.
+     */
+    private static final byte SLIP_END = (byte) 0xc0;
+    private static final byte SLIP_ESC = (byte) 0xdb;
+    private static final byte SLIP_ESC_END = (byte) 0xdc;
+    private static final byte SLIP_ESC_ESC = (byte) 0xdd;
+
+    /**
+     * Utility class.
+     */
+    private FrameDecoders() {
+    }
+
+    /**
+     * Text lines ending in LF. A CR before the LF is dropped, so NMEA and AT command responses decode without a trailing CR.
+     *
+     * @return Decoder.
+     */
+    public static FrameDecoder line() {
+        return new Delimited((byte) '\n', true);
+    }
+
+    /**
+     * Frames ending in delimiter. The delimiter is not part of the frame.
+     *
+     * @param delimiter Delimiter byte.
+     * @return Decoder.
+     */
+    public static FrameDecoder delimited(final byte delimiter) {
+        return new Delimited(delimiter, false);
+    }
+
+    /**
+     * SLIP frames ending in END. Empty frames from leading END bytes are skipped.
+     *
+     * @return Decoder.
+     */
+    public static FrameDecoder slip() {
+        return new Slip();
+    }
+
+    /**
+     * COBS frames ending in a zero byte. Empty frames are skipped.
+     *
+     * @return Decoder.
+     */
+    public static FrameDecoder cobs() {
+        return new Cobs();
+    }
+
+    /**
+     * Frames with an unsigned length header of 1, 2 or 4 bytes followed by that many payload bytes. The frame is the payload. A
+     * length over maxLength skips one byte so the decoder can resynchronize.
+     *
+     * @param headerSize Header size 1, 2 or 4.
+     * @param order Header byte order.
+     * @param maxLength Largest valid payload.
+     * @return Decoder.
+     */
+    public static FrameDecoder lengthPrefixed(final int headerSize, final ByteOrder order, final int maxLength) {
+        if (headerSize != 1 && headerSize != 2 && headerSize != 4) {
+            throw new IllegalArgumentException(String.format("Header size %d is not 1, 2 or 4", headerSize));
+        }
+        return new LengthPrefixed(headerSize, order, maxLength);
+    }
+
+    /**
+     * Point frame view at range of receive buffer.
+     *
+     * @param frame Frame view.
+     * @param start Start index.
+     * @param end End index (exclusive).
+     */
+    private static void set(final ByteBuffer frame, final int start, final int end) {
+        frame.clear().position(start).limit(end);
+    }
+
+    /**
+     * Delimited frames.
+     */
+    private static final class Delimited implements FrameDecoder {
+
+        /**
+         * Delimiter byte.
+         */
+        private final byte delimiter;
+        /**
+         * Drop CR before delimiter.
+         */
+        private final boolean stripCr;
+        /**
+         * Bytes after position already scanned.
+         */
+        private int scanned;
+
+        /**
+         * Create decoder.
+         *
+         * @param delimiter Delimiter byte.
+         * @param stripCr Drop CR before delimiter.
+         */
+        private Delimited(final byte delimiter, final boolean stripCr) {
+            this.delimiter = delimiter;
+            this.stripCr = stripCr;
+        }
+
+        @Override
+        public int decode(final ByteBuffer in, final ByteBuffer frame) {
+            final var start = in.position();
+            final var end = in.limit();
+            for (int i = start + scanned; i < end; i++) {
+                if (in.get(i) == delimiter) {
+                    var last = i;
+                    if (stripCr && last > start && in.get(last - 1) == '\r') {
+                        last--;
+                    }
+                    set(frame, start, last);
+                    in.position(i + 1);
+                    scanned = 0;
+                    return 1;
+                }
+            }
+            scanned = end - start;
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            scanned = 0;
+        }
+    }
+
+    /**
+     * SLIP frames.
+     */
+    private static final class Slip implements FrameDecoder {
+
+        /**
+         * Bytes after position already scanned.
+         */
+        private int scanned;
+
+        @Override
+        public int decode(final ByteBuffer in, final ByteBuffer frame) {
+            final var end = in.limit();
+            var start = in.position();
+            for (int i = start + scanned; i < end; i++) {
+                if (in.get(i) == SLIP_END) {
+                    scanned = 0;
+                    if (i == start) {
+                        // Empty frame
+                        start++;
+                        in.position(start);
+                        continue;
+                    }
+                    in.position(i + 1);
+                    // Unescape in place, write index never passes read index
+                    var w = start;
+                    for (int r = start; r < i; r++) {
+                        var b = in.get(r);
+                        if (b == SLIP_ESC) {
+                            if (++r == i) {
+                                return -1;
+                            }
+                            b = in.get(r);
+                            if (b == SLIP_ESC_END) {
+                                b = SLIP_END;
+                            } else if (b == SLIP_ESC_ESC) {
+                                b = SLIP_ESC;
+                            } else {
+                                return -1;
+                            }
+                        }
+                        in.put(w++, b);
+                    }
+                    set(frame, start, w);
+                    return 1;
+                }
+            }
+            scanned = end - start;
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            scanned = 0;
+        }
+    }
+
+    /**
+     * COBS frames.
+     */
+    private static final class Cobs implements FrameDecoder {
+
+        /**
+         * Bytes after position already scanned.
+         */
+        private int scanned;
+
+        @Override
+        public int decode(final ByteBuffer in, final ByteBuffer frame) {
+            final var end = in.limit();
+            var start = in.position();
+            for (int i = start + scanned; i < end; i++) {
+                if (in.get(i) == 0) {
+                    scanned = 0;
+                    if (i == start) {
+                        // Empty frame
+                        start++;
+                        in.position(start);
+                        continue;
+                    }
+                    in.position(i + 1);
+                    // Decode in place, each code byte frees room for the zero it stands for
+                    var w = start;
+                    var r = start;
+                    while (r < i) {
+                        final var code = in.get(r++) & 0xff;
+                        if (r + code - 1 > i) {
+                            return -1;
+                        }
+                        for (int j = 1; j < code; j++) {
+                            in.put(w++, in.get(r++));
+                        }
+                        if (code < 0xff && r < i) {
+                            in.put(w++, (byte) 0);
+                        }
+                    }
+                    set(frame, start, w);
+                    return 1;
+                }
+            }
+            scanned = end - start;
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            scanned = 0;
+        }
+    }
+
+    /**
+     * Length prefixed frames.
+     */
+    private static final class LengthPrefixed implements FrameDecoder {
+
+        /**
+         * Header size.
+         */
+        private final int headerSize;
+        /**
+         * Header byte order.
+         */
+        private final ByteOrder order;
+        /**
+         * Largest valid payload.
+         */
+        private final int maxLength;
+
+        /**
+         * Create decoder.
+         *
+         * @param headerSize Header size 1, 2 or 4.
+         * @param order Header byte order.
+         * @param maxLength Largest valid payload.
+         */
+        private LengthPrefixed(final int headerSize, final ByteOrder order, final int maxLength) {
+            this.headerSize = headerSize;
+            this.order = order;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public int decode(final ByteBuffer in, final ByteBuffer frame) {
+            final var start = in.position();
+            if (in.remaining() < headerSize) {
+                return 0;
+            }
+            long len = 0;
+            for (int i = 0; i < headerSize; i++) {
+                final var b = in.get(start + (order == ByteOrder.BIG_ENDIAN ? i : headerSize - 1 - i)) & 0xff;
+                len = (len << 8) | b;
+            }
+            if (len > maxLength) {
+                in.position(start + 1);
+                return -1;
+            }
+            if (in.remaining() < headerSize + len) {
+                return 0;
+            }
+            set(frame, start + headerSize, start + headerSize + (int) len);
+            in.position(start + headerSize + (int) len);
+            return 1;
+        }
+    }
+}
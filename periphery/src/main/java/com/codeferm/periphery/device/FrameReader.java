@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a byte stream into a direct receive buffer and splits it into frames with a FrameDecoder. Frames are returned as a reused
+ * view of the receive buffer, valid until the next call, so high rate feeds decode without per message garbage. Only bytes of a
+ * partial frame are moved when more input is read. A frame that does not fit in the buffer is discarded and counted as an
+ * error.
+ *
+ * Use uart::readAvailable or channel::read as the source. Not thread safe, use one reader per stream.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class FrameReader {
+
+    /**
+     * Receive buffer, position to limit is unread input.
+     */
+    private final ByteBuffer buf;
+    /**
+     * Frame view of receive buffer.
+     */
+    private final ByteBuffer frame;
+    /**
+     * Byte source.
+     */
+    private final Source source;
+    /**
+     * Frame decoder.
+     */
+    private final FrameDecoder decoder;
+    /**
+     * Malformed frames skipped and overflows.
+     */
+    private long errors;
+    /**
+     * Drop rest of overflowed frame.
+     */
+    private boolean discard;
+
+    /**
+     * Create reader.
+     *
+     * @param source Byte source.
+     * @param decoder Frame decoder.
+     * @param capacity Receive buffer size, at least the largest encoded frame.
+     */
+    public FrameReader(final Source source, final FrameDecoder decoder, final int capacity) {
+        this.source = source;
+        this.decoder = decoder;
+        buf = ByteBuffer.allocateDirect(capacity);
+        buf.flip();
+        frame = buf.duplicate();
+    }
+
+    /**
+     * Return next frame, reading more input as needed.
+     *
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @return Frame view valid until the next call or null on timeout or end of stream.
+     * @throws IOException If source failed.
+     */
+    public ByteBuffer next(final int timeoutMs) throws IOException {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            final var rc = decoder.decode(buf, frame);
+            if (rc > 0) {
+                if (!discard) {
+                    return frame;
+                }
+                discard = false;
+                continue;
+            } else if (rc < 0) {
+                errors++;
+                continue;
+            }
+            if (buf.position() == 0 && buf.limit() == buf.capacity()) {
+                // No frame fits, drop input and the rest of the frame
+                errors++;
+                discard = true;
+                buf.position(buf.limit());
+                decoder.reset();
+            }
+            var wait = timeoutMs;
+            if (timeoutMs > 0) {
+                wait = (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0) {
+                    return null;
+                }
+            }
+            buf.compact();
+            final var count = source.read(buf, wait);
+            buf.flip();
+            if (count < -1) {
+                throw new IOException(String.format("Frame source returned %d", count));
+            } else if (count <= 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Return number of malformed frames skipped and buffer overflows.
+     *
+     * @return Error count.
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * Byte source such as Uart.readAvailable or SerialChannel.read.
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Read available bytes into dst at its position, waiting up to timeoutMs for at least one.
+         *
+         * @param dst Destination.
+         * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+         * @return Bytes read, 0 on timeout or -1 at end of stream. Errors are thrown, not returned, so an errno of 1 cannot be
+         * mistaken for end of stream.
+         * @throws IOException If read failed.
+         */
+        int read(ByteBuffer dst, int timeoutMs) throws IOException;
+    }
+}
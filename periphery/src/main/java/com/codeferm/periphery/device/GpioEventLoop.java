@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import com.codeferm.periphery.Gpio;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single thread GPIO edge event loop. Many lines share one epoll set, every wakeup drains all queued kernel events of all ready
+ * lines with one JNI call and events are dispatched to handlers on virtual threads. Events for a line are handled in order, while
+ * different lines are handled in parallel. This scales to hundreds of lines where BlockingButton needs a thread per line.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+public class GpioEventLoop implements AutoCloseable {
+
+    /**
+     * Handles events for a line.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Handle edge event.
+         *
+         * @param line GPIO line number.
+         * @param edge GPIO_EDGE_RISING or GPIO_EDGE_FALLING.
+         * @param timestamp Event timestamp in nanoseconds.
+         */
+        void onEvent(int line, int edge, long timestamp);
+    }
+
+    /**
+     * Lock for registration and lifecycle.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * epoll file descriptor.
+     */
+    private final int epfd;
+    /**
+     * Handler executor.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * Per line ring capacity.
+     */
+    private final int ringSize;
+    /**
+     * Registered lines indexed by id. Replaced on registration, so loop thread reads without locking.
+     */
+    private volatile Registration[] registrations = new Registration[0];
+    /**
+     * Event loop running.
+     */
+    private volatile boolean running;
+    /**
+     * Lines and epoll fd released.
+     */
+    private boolean closed;
+    /**
+     * Event loop thread.
+     */
+    private Thread thread;
+    /**
+     * Drained event ids.
+     */
+    private final int[] ids;
+    /**
+     * Drained event edges.
+     */
+    private final int[] edges;
+    /**
+     * Drained event timestamps.
+     */
+    private final long[] timestamps;
+    /**
+     * epoll wait timeout, so close is noticed.
+     */
+    private final int timeoutMs;
+
+    /**
+     * Create event loop.
+     *
+     * @param batchSize Maximum events drained per wakeup.
+     * @param ringSize Events buffered per line before dropping.
+     * @param timeoutMs epoll wait timeout in milliseconds used to check for shutdown.
+     */
+    public GpioEventLoop(final int batchSize, final int ringSize, final int timeoutMs) {
+        epfd = Gpio.gpioEpollCreate();
+        if (epfd < 0) {
+            throw new RuntimeException(String.format("epoll create failed: errno %d", -epfd));
+        }
+        this.ringSize = ringSize;
+        this.timeoutMs = timeoutMs;
+        ids = new int[batchSize];
+        edges = new int[batchSize];
+        timestamps = new long[batchSize];
+    }
+
+    /**
+     * Create event loop with defaults.
+     */
+    public GpioEventLoop() {
+        this(256, 64, 100);
+    }
+
+    /**
+     * Open line for edge events and register handler. The loop owns the line and closes it.
+     *
+     * @param device GPIO device path (e.g., "/dev/gpiochip1").
+     * @param line GPIO line number.
+     * @param edge Type of edge to detect (GPIO_EDGE_RISING, GPIO_EDGE_FALLING, or GPIO_EDGE_BOTH).
+     * @param handler Event handler.
+     */
+    public void register(final String device, final int line, final int edge, final Handler handler) {
+        final var gpio = new Gpio(device, line, GPIO_DIR_IN);
+        if (Gpio.gpioSetEdge(gpio.getHandle(), edge) != Gpio.GPIO_SUCCESS) {
+            final var msg = Gpio.gpioErrMessage(gpio.getHandle());
+            gpio.close();
+            throw new RuntimeException(msg);
+        }
+        register(gpio, handler);
+    }
+
+    /**
+     * Register open GPIO with edge detection set. The loop owns the GPIO and closes it, also when registration fails.
+     *
+     * @param gpio Open GPIO.
+     * @param handler Event handler.
+     */
+    public void register(final Gpio gpio, final Handler handler) {
+        lock.lock();
+        try {
+            if (closed) {
+                gpio.close();
+                throw new IllegalStateException("Event loop closed");
+            }
+            final var id = registrations.length;
+            final var registration = new Registration(gpio, new GpioEventRing(Gpio.gpioLine(gpio.getHandle()), handler,
+                    ringSize));
+            final var rc = Gpio.gpioEpollAdd(epfd, Gpio.gpioFd(gpio.getHandle()), id);
+            if (rc < 0) {
+                gpio.close();
+                throw new RuntimeException(String.format("epoll add failed: errno %d", -rc));
+            }
+            final var copy = Arrays.copyOf(registrations, id + 1);
+            copy[id] = registration;
+            registrations = copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start event loop thread.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (!running) {
+                running = true;
+                thread = Thread.ofPlatform().name(GpioEventLoop.class.getSimpleName()).daemon().start(this::run);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drain events and hand them to each line's ring.
+     */
+    private void run() {
+        while (running) {
+            final var count = Gpio.gpioEpollDrain(epfd, timeoutMs, ids, edges, timestamps, ids.length);
+            if (count < 0) {
+                log.error(String.format("epoll drain failed: errno %d", -count));
+                break;
+            }
+            final var regs = registrations;
+            for (int i = 0; i < count; i++) {
+                final var ring = regs[ids[i]].ring;
+                if (ring.offer(edges[i], timestamps[i])) {
+                    executor.execute(ring::drain);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return events dropped because a line's ring was full.
+     *
+     * @param line GPIO line number.
+     * @return Dropped events or -1 if line not registered.
+     */
+    public long getDropped(final int line) {
+        for (final var registration : registrations) {
+            if (registration.ring.getLine() == line) {
+                return registration.ring.getDropped();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stop event loop, wait for handlers and close all lines. The loop thread is joined even if the caller is interrupted, so lines
+     * and the epoll fd are never released under a running loop. Later calls do nothing.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = false;
+            if (thread != null) {
+                var interrupted = false;
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            executor.close();
+            for (final var registration : registrations) {
+                Gpio.gpioEpollDel(epfd, Gpio.gpioFd(registration.gpio.getHandle()));
+                registration.gpio.close();
+            }
+            registrations = new Registration[0];
+            Gpio.gpioEpollClose(epfd);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registered line and its event ring.
+     *
+     * @param gpio Open GPIO.
+     * @param ring Event ring.
+     */
+    private record Registration(Gpio gpio, GpioEventRing ring) {
+
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single producer, single consumer primitive ring of edge events for one line. GpioEventLoop offers events from its loop thread and
+ * runs drain on a virtual thread when offer asks for it, so events of a line are handled in order by at most one task.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+public class GpioEventRing {
+
+    /**
+     * GPIO line number.
+     */
+    private final int line;
+    /**
+     * Event handler.
+     */
+    private final GpioEventLoop.Handler handler;
+    /**
+     * Ring edges.
+     */
+    private final int[] edges;
+    /**
+     * Ring timestamps.
+     */
+    private final long[] timestamps;
+    /**
+     * Next slot to write (producer only).
+     */
+    private volatile long head;
+    /**
+     * Next slot to read (drain task only).
+     */
+    private volatile long tail;
+    /**
+     * Drain task scheduled.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * Events dropped because ring was full.
+     */
+    private volatile long dropped;
+
+    /**
+     * Create ring.
+     *
+     * @param line GPIO line number.
+     * @param handler Event handler.
+     * @param size Ring size.
+     */
+    public GpioEventRing(final int line, final GpioEventLoop.Handler handler, final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(String.format("Ring size %d must be positive", size));
+        }
+        this.line = line;
+        this.handler = handler;
+        edges = new int[size];
+        timestamps = new long[size];
+    }
+
+    /**
+     * Add event to ring. Called by the producer only.
+     *
+     * @param edge Event edge.
+     * @param timestamp Event timestamp.
+     * @return True if a drain task needs to be scheduled.
+     */
+    public boolean offer(final int edge, final long timestamp) {
+        final var h = head;
+        if (h - tail == edges.length) {
+            dropped++;
+        } else {
+            final var slot = (int) (h % edges.length);
+            edges[slot] = edge;
+            timestamps[slot] = timestamp;
+            head = h + 1;
+        }
+        return scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Handle all events in ring in order. Run only when offer returned true.
+     */
+    public void drain() {
+        do {
+            var t = tail;
+            while (t < head) {
+                final var slot = (int) (t % edges.length);
+                try {
+                    handler.onEvent(line, edges[slot], timestamps[slot]);
+                } catch (RuntimeException e) {
+                    log.error(String.format("Line %d handler error %s", line, e.getMessage()));
+                }
+                tail = ++t;
+            }
+            scheduled.set(false);
+            // Event may have arrived after last check, but before scheduled was cleared
+        } while (tail < head && scheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Return GPIO line number.
+     *
+     * @return Line.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Return events dropped because ring was full.
+     *
+     * @return Dropped events.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+/**
+ * I2C block operations used by I2cBusScheduler. I2cBus implements it, so tests can run the scheduler against a simulated bus.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface I2cBlockBus {
+
+    /**
+     * Read len bytes starting at 8 bit register into dst at off.
+     *
+     * @param addr Peripheral address.
+     * @param reg Starting register.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return 0 on success.
+     */
+    int readBlock(short addr, short reg, byte[] dst, int off, int len);
+
+    /**
+     * Write len bytes from src at off starting at 8 bit register.
+     *
+     * @param addr Peripheral address.
+     * @param reg Starting register.
+     * @param src Source.
+     * @param off Offset in source.
+     * @param len Byte count.
+     * @return 0 on success.
+     */
+    int writeBlock(short addr, short reg, byte[] src, int off, int len);
+
+    /**
+     * Run all messages of transaction and copy read data to caller arrays.
+     *
+     * @param transaction Transaction.
+     * @return 0 on success.
+     */
+    int execute(I2cTransaction transaction);
+}
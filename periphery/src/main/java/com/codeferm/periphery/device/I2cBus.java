@@ -4,6 +4,7 @@
 package com.codeferm.periphery.device;
 
 import com.codeferm.periphery.I2c;
+import java.nio.ByteBuffer;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
 
@@ -15,7 +16,7 @@ import lombok.extern.slf4j.Slf4j;
  * @since 1.0.0
  */
 @Slf4j
-public class I2cBus implements AutoCloseable {
+public class I2cBus implements I2cBlockBus, AutoCloseable {
 
     /**
      * Reentrant lock for thread-safe I2C access.
@@ -60,6 +61,23 @@ public class I2cBus implements AutoCloseable {
         }
     }
 
+    /**
+     * Read from i2c 8 bit address into direct buffer position to limit.
+     *
+     * @param addr Peripheral address.
+     * @param reg Register address.
+     * @param buf Direct read buffer.
+     * @return 0 on success.
+     */
+    public int readReg8(final short addr, final short reg, final ByteBuffer buf) {
+        lock.lock();
+        try {
+            return I2c.i2cRead8(handle, addr, reg, buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Read array from i2c 8 bit address into short array.
      *
@@ -77,6 +95,46 @@ public class I2cBus implements AutoCloseable {
         }
     }
 
+    /**
+     * Read len bytes starting at 8 bit register into dst at off in one auto-increment transaction.
+     *
+     * @param addr Peripheral address.
+     * @param reg Starting register.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return 0 on success.
+     */
+    @Override
+    public int readBlock(final short addr, final short reg, final byte[] dst, final int off, final int len) {
+        lock.lock();
+        try {
+            return I2c.i2cReadBlock8(handle, addr, reg, dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write len bytes from src at off starting at 8 bit register in one auto-increment transaction.
+     *
+     * @param addr Peripheral address.
+     * @param reg Starting register.
+     * @param src Source.
+     * @param off Offset in source.
+     * @param len Byte count (up to 4096).
+     * @return 0 on success.
+     */
+    @Override
+    public int writeBlock(final short addr, final short reg, final byte[] src, final int off, final int len) {
+        lock.lock();
+        try {
+            return I2c.i2cWriteBlock8(handle, addr, reg, src, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Read two consecutive i2c 8 bit addresses and combine them.
      *
@@ -128,6 +186,124 @@ public class I2cBus implements AutoCloseable {
         }
     }
 
+    /**
+     * Run all messages of transaction in one I2C_RDWR ioctl and copy read data to caller arrays.
+     *
+     * @param transaction Transaction with at least one message.
+     * @return 0 on success, I2C_ERROR_ARG for an empty transaction or a negative I2C error code on failure.
+     */
+    @Override
+    public int execute(final I2cTransaction transaction) {
+        lock.lock();
+        try {
+            final var rc = I2c.i2cTransferPacked(handle, transaction.descAddress(), transaction.size(), transaction.dataAddress());
+            if (rc == I2c.I2C_SUCCESS) {
+                transaction.complete();
+            }
+            return rc;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decode signed big-endian 16 bit word (high byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of high byte.
+     * @return Signed value.
+     */
+    public static int getShortBE(final byte[] buf, final int off) {
+        return (short) ((buf[off] << 8) | (buf[off + 1] & 0xff));
+    }
+
+    /**
+     * Decode signed little-endian 16 bit word (low byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of low byte.
+     * @return Signed value.
+     */
+    public static int getShortLE(final byte[] buf, final int off) {
+        return (short) ((buf[off + 1] << 8) | (buf[off] & 0xff));
+    }
+
+    /**
+     * Decode unsigned big-endian 16 bit word (high byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of high byte.
+     * @return Unsigned value.
+     */
+    public static int getUShortBE(final byte[] buf, final int off) {
+        return getShortBE(buf, off) & 0xffff;
+    }
+
+    /**
+     * Decode unsigned little-endian 16 bit word (low byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of low byte.
+     * @return Unsigned value.
+     */
+    public static int getUShortLE(final byte[] buf, final int off) {
+        return getShortLE(buf, off) & 0xffff;
+    }
+
+    /**
+     * Decode consecutive signed big-endian 16 bit words.
+     *
+     * @param src Buffer.
+     * @param off Offset of first high byte.
+     * @param dst Decoded values.
+     * @param dstOff Offset in values.
+     * @param count Number of words.
+     */
+    public static void getShortsBE(final byte[] src, final int off, final int[] dst, final int dstOff, final int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = getShortBE(src, off + i * 2);
+        }
+    }
+
+    /**
+     * Decode consecutive signed little-endian 16 bit words.
+     *
+     * @param src Buffer.
+     * @param off Offset of first low byte.
+     * @param dst Decoded values.
+     * @param dstOff Offset in values.
+     * @param count Number of words.
+     */
+    public static void getShortsLE(final byte[] src, final int off, final int[] dst, final int dstOff, final int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = getShortLE(src, off + i * 2);
+        }
+    }
+
+    /**
+     * Encode big-endian 16 bit word (high byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of high byte.
+     * @param value Value.
+     */
+    public static void putShortBE(final byte[] buf, final int off, final int value) {
+        buf[off] = (byte) (value >> 8);
+        buf[off + 1] = (byte) value;
+    }
+
+    /**
+     * Encode little-endian 16 bit word (low byte first).
+     *
+     * @param buf Buffer.
+     * @param off Offset of low byte.
+     * @param value Value.
+     */
+    public static void putShortLE(final byte[] buf, final int off, final int value) {
+        buf[off] = (byte) value;
+        buf[off + 1] = (byte) (value >> 8);
+    }
+
     /**
      * Return a string representation of the I2C handle.
      * * @return I2C handle as String.
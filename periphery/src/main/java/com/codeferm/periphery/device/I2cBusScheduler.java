@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous I2C bus scheduler. Each device gets its own queue and one bus owner thread runs requests, so callers never block on
+ * the bus and a slow sensor read only delays other devices by one transaction. The device with the highest priority runs next.
+ * Every turn a waiting device is passed over raises its priority by one until it runs, so lower priority devices are never starved,
+ * and devices of equal priority take turns. Devices registered with coalescing have queued reads of contiguous registers merged
+ * into one burst read. Overlapping reads are never merged, since reading FIFO or status registers can have side effects.
+ *
+ * Futures are completed on the bus thread, so use the async variants of CompletableFuture for anything slow.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class I2cBusScheduler implements AutoCloseable {
+
+    /**
+     * Request kinds.
+     */
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int TRANSACTION = 2;
+    /**
+     * Lock for registration and lifecycle.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * I2C bus.
+     */
+    private final I2cBlockBus bus;
+    /**
+     * Largest coalesced read in bytes.
+     */
+    private final int maxCoalesce;
+    /**
+     * Idle park time, so close is noticed.
+     */
+    private final long parkNs;
+    /**
+     * Registered devices. Replaced on registration, so bus thread reads without locking.
+     */
+    private volatile Device[] devices = new Device[0];
+    /**
+     * Next device to consider first (bus thread only).
+     */
+    private int cursor;
+    /**
+     * Reads being coalesced (bus thread only).
+     */
+    private final List<Request> batch = new ArrayList<>();
+    /**
+     * Scheduler running.
+     */
+    private volatile boolean running;
+    /**
+     * Bus owner thread.
+     */
+    private volatile Thread thread;
+
+    /**
+     * Create scheduler. Call start before submitting requests. The caller still owns the bus and closes it.
+     *
+     * @param bus I2C bus.
+     * @param maxCoalesce Largest coalesced read in bytes (0 disables coalescing).
+     * @param parkMs Idle park time in milliseconds used to check for shutdown.
+     */
+    public I2cBusScheduler(final I2cBlockBus bus, final int maxCoalesce, final int parkMs) {
+        this.bus = bus;
+        this.maxCoalesce = maxCoalesce;
+        this.parkNs = TimeUnit.MILLISECONDS.toNanos(parkMs);
+    }
+
+    /**
+     * Create scheduler with 32 byte coalescing and 100 ms park time.
+     *
+     * @param bus I2C bus.
+     */
+    public I2cBusScheduler(final I2cBlockBus bus) {
+        this(bus, 32, 100);
+    }
+
+    /**
+     * Register device with its own queue.
+     *
+     * @param address Peripheral address.
+     * @param priority Higher runs first. Also the number of turns a device one level lower may wait.
+     * @param coalesce Merge queued reads of contiguous registers. Only use for devices where reading a register has no side
+     * effects.
+     * @return Device queue.
+     */
+    public Device register(final short address, final int priority, final boolean coalesce) {
+        lock.lock();
+        try {
+            final var device = new Device(address, priority, coalesce, devices.length);
+            final var copy = Arrays.copyOf(devices, device.index + 1);
+            copy[device.index] = device;
+            devices = copy;
+            return device;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Register device without read coalescing.
+     *
+     * @param address Peripheral address.
+     * @param priority Higher runs first. Also the number of turns a device one level lower may wait.
+     * @return Device queue.
+     */
+    public Device register(final short address, final int priority) {
+        return register(address, priority, false);
+    }
+
+    /**
+     * Start bus owner thread.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (!running) {
+                running = true;
+                thread = Thread.ofPlatform().name(I2cBusScheduler.class.getSimpleName()).daemon().start(this::run);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run requests until closed.
+     */
+    private void run() {
+        while (running) {
+            final var device = next();
+            if (device == null) {
+                LockSupport.parkNanos(this, parkNs);
+            } else {
+                process(device);
+            }
+        }
+    }
+
+    /**
+     * Pick device with highest effective priority starting at cursor, so equal priorities take turns. Devices passed over age.
+     *
+     * @return Device or null if all queues are empty.
+     */
+    private Device next() {
+        final var devs = devices;
+        Device best = null;
+        for (int i = 0; i < devs.length; i++) {
+            final var device = devs[(cursor + i) % devs.length];
+            if (!device.queue.isEmpty() && (best == null || device.effectivePriority() > best.effectivePriority())) {
+                best = device;
+            }
+        }
+        if (best != null) {
+            for (final var device : devs) {
+                if (device != best && !device.queue.isEmpty()) {
+                    device.skipped++;
+                }
+            }
+            best.skipped = 0;
+            cursor = (best.index + 1) % devs.length;
+        }
+        return best;
+    }
+
+    /**
+     * Run next request of device, coalescing contiguous reads if enabled.
+     *
+     * @param device Device with at least one queued request.
+     */
+    private void process(final Device device) {
+        final var request = device.queue.poll();
+        try {
+            switch (request.kind) {
+                case READ ->
+                    read(device, request);
+                case WRITE -> {
+                    final var rc = bus.writeBlock(device.address, (short) request.reg, request.data, 0, request.data.length);
+                    if (rc == 0) {
+                        complete(request, null);
+                    } else {
+                        fail(request, String.format("Write to 0x%02x register 0x%02x failed: %d", device.address, request.reg, rc));
+                    }
+                }
+                default -> {
+                    final var rc = bus.execute(request.transaction);
+                    if (rc == 0) {
+                        complete(request, request.transaction);
+                    } else {
+                        fail(request, String.format("Transaction for 0x%02x failed: %d", device.address, rc));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Read register range covering first request and, if device coalesces, queued reads that start where the range ends.
+     *
+     * @param device Device.
+     * @param first First read.
+     */
+    private void read(final Device device, final Request first) {
+        final var start = first.reg;
+        var end = first.reg + first.len;
+        batch.clear();
+        batch.add(first);
+        Request next;
+        // Bus thread is the only consumer, so peek then poll is safe
+        while (device.coalesce && (next = device.queue.peek()) != null && next.kind == READ && next.reg == end && next.reg
+                + next.len - start <= maxCoalesce) {
+            device.queue.poll();
+            batch.add(next);
+            end = next.reg + next.len;
+        }
+        final var buf = new byte[end - start];
+        try {
+            final var rc = bus.readBlock(device.address, (short) start, buf, 0, buf.length);
+            for (final var request : batch) {
+                if (rc == 0) {
+                    complete(request, batch.size() == 1 ? buf : Arrays.copyOfRange(buf, request.reg - start, request.reg - start
+                            + request.len));
+                } else {
+                    fail(request, String.format("Read from 0x%02x register 0x%02x failed: %d", device.address, request.reg, rc));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (final var request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Complete request future.
+     *
+     * @param <T> Result type.
+     * @param request Request.
+     * @param value Result.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void complete(final Request request, final T value) {
+        ((CompletableFuture<T>) request.future).complete(value);
+    }
+
+    /**
+     * Fail request future.
+     *
+     * @param request Request.
+     * @param message Error message.
+     */
+    private static void fail(final Request request, final String message) {
+        request.future.completeExceptionally(new RuntimeException(message));
+    }
+
+    /**
+     * Stop bus thread and fail queued requests. Does not close the bus.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                thread.join();
+                thread = null;
+            }
+            for (final var device : devices) {
+                Request request;
+                while ((request = device.queue.poll()) != null) {
+                    fail(request, "Scheduler closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queued request.
+     */
+    private static final class Request {
+
+        /**
+         * READ, WRITE or TRANSACTION.
+         */
+        private final int kind;
+        /**
+         * Starting register.
+         */
+        private final int reg;
+        /**
+         * Read length.
+         */
+        private final int len;
+        /**
+         * Write data.
+         */
+        private final byte[] data;
+        /**
+         * Transaction.
+         */
+        private final I2cTransaction transaction;
+        /**
+         * Completion.
+         */
+        private final CompletableFuture<?> future;
+
+        /**
+         * Create request.
+         *
+         * @param kind READ, WRITE or TRANSACTION.
+         * @param reg Starting register.
+         * @param len Read length.
+         * @param data Write data.
+         * @param transaction Transaction.
+         * @param future Completion.
+         */
+        Request(final int kind, final int reg, final int len, final byte[] data, final I2cTransaction transaction,
+                final CompletableFuture<?> future) {
+            this.kind = kind;
+            this.reg = reg;
+            this.len = len;
+            this.data = data;
+            this.transaction = transaction;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Device queue. Requests of a device run in submit order.
+     */
+    public final class Device {
+
+        /**
+         * Peripheral address.
+         */
+        private final short address;
+        /**
+         * Base priority.
+         */
+        private final int priority;
+        /**
+         * Merge contiguous reads.
+         */
+        private final boolean coalesce;
+        /**
+         * Index in devices.
+         */
+        private final int index;
+        /**
+         * Pending requests.
+         */
+        private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        /**
+         * Turns passed over while waiting (bus thread only).
+         */
+        private int skipped;
+
+        /**
+         * Create device queue.
+         *
+         * @param address Peripheral address.
+         * @param priority Base priority.
+         * @param coalesce Merge contiguous reads.
+         * @param index Index in devices.
+         */
+        private Device(final short address, final int priority, final boolean coalesce, final int index) {
+            this.address = address;
+            this.priority = priority;
+            this.coalesce = coalesce;
+            this.index = index;
+        }
+
+        /**
+         * Return priority including aging.
+         *
+         * @return Effective priority.
+         */
+        private int effectivePriority() {
+            return priority + skipped;
+        }
+
+        /**
+         * Queue request and wake bus thread.
+         *
+         * @param request Request.
+         */
+        private void submit(final Request request) {
+            if (!running) {
+                throw new IllegalStateException("Scheduler not running");
+            }
+            queue.add(request);
+            // Close may have drained queues after the check above
+            if (!running && queue.remove(request)) {
+                fail(request, "Scheduler closed");
+            }
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Queue burst read of len bytes starting at 8 bit register.
+         *
+         * @param reg Starting register.
+         * @param len Byte count.
+         * @return Future with data read.
+         */
+        public CompletableFuture<byte[]> read(final int reg, final int len) {
+            final var future = new CompletableFuture<byte[]>();
+            submit(new Request(READ, reg, len, null, null, future));
+            return future;
+        }
+
+        /**
+         * Queue burst write starting at 8 bit register.
+         *
+         * @param reg Starting register.
+         * @param data Data to write.
+         * @return Future completed when written.
+         */
+        public CompletableFuture<Void> write(final int reg, final byte... data) {
+            final var future = new CompletableFuture<Void>();
+            submit(new Request(WRITE, reg, data.length, data, null, future));
+            return future;
+        }
+
+        /**
+         * Queue transaction. The transaction must not be changed until the future completes.
+         *
+         * @param transaction Transaction.
+         * @return Future with transaction, so read data can be used.
+         */
+        public CompletableFuture<I2cTransaction> execute(final I2cTransaction transaction) {
+            final var future = new CompletableFuture<I2cTransaction>();
+            submit(new Request(TRANSACTION, 0, 0, null, transaction, future));
+            return future;
+        }
+
+        /**
+         * Return number of queued requests.
+         *
+         * @return Pending requests.
+         */
+        public int pending() {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.getDirectBufferAddress;
+import static com.codeferm.periphery.I2c.I2C_M_RD;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Reusable multi-message I2C transaction. Message descriptors and buffers are packed into preallocated native memory, so combined
+ * write/read sequences to one or more devices run in one I2C_RDWR ioctl through I2cBus.execute without malloc/free per call. Read
+ * data is copied into caller arrays after execute or read in place with rx. Call clear to reuse.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class I2cTransaction {
+
+    /**
+     * Most messages i2c-dev accepts in one I2C_RDWR ioctl.
+     */
+    public static final int MAX_MESSAGES = 42;
+    /**
+     * Descriptor ints per message (address, flags, length and data offset).
+     */
+    private static final int DESC_INTS = 4;
+    /**
+     * Message descriptors.
+     */
+    private final ByteBuffer desc;
+    /**
+     * Message descriptors address.
+     */
+    private final long descAddress;
+    /**
+     * Data arena.
+     */
+    private final ByteBuffer data;
+    /**
+     * Data arena address.
+     */
+    private final long dataAddress;
+    /**
+     * Caller arrays read messages are copied to, null for none.
+     */
+    private final byte[][] dsts;
+    /**
+     * Offset in caller arrays.
+     */
+    private final int[] dstOffsets;
+    /**
+     * Message count.
+     */
+    private int count;
+
+    /**
+     * Allocate native descriptors and data arena.
+     *
+     * @param maxMessages Maximum messages (up to MAX_MESSAGES).
+     * @param capacity Data arena size in bytes.
+     */
+    public I2cTransaction(final int maxMessages, final int capacity) {
+        if (maxMessages < 1 || maxMessages > MAX_MESSAGES) {
+            throw new IllegalArgumentException(String.format("Messages must be 1 to %d", MAX_MESSAGES));
+        }
+        desc = ByteBuffer.allocateDirect(maxMessages * DESC_INTS * Integer.BYTES).order(ByteOrder.nativeOrder());
+        descAddress = getDirectBufferAddress(desc);
+        data = ByteBuffer.allocateDirect(capacity);
+        dataAddress = getDirectBufferAddress(data);
+        dsts = new byte[maxMessages][];
+        dstOffsets = new int[maxMessages];
+    }
+
+    /**
+     * Remove all messages.
+     *
+     * @return This transaction.
+     */
+    public I2cTransaction clear() {
+        for (int i = 0; i < count; i++) {
+            dsts[i] = null;
+        }
+        count = 0;
+        data.clear();
+        return this;
+    }
+
+    /**
+     * Add message with len bytes of arena space.
+     *
+     * @param addr Peripheral address.
+     * @param flags Message flags.
+     * @param len Message length.
+     * @return Arena offset of message.
+     */
+    private int add(final int addr, final int flags, final int len) {
+        if (len < 0) {
+            throw new IllegalArgumentException(String.format("Message length %d is negative", len));
+        }
+        if (count == dsts.length) {
+            throw new IllegalStateException(String.format("Transaction full at %d messages", count));
+        }
+        if (len > data.remaining()) {
+            throw new IllegalStateException(String.format("Data arena has %d bytes remaining, %d needed", data.remaining(), len));
+        }
+        final var offset = data.position();
+        final var pos = count * DESC_INTS * Integer.BYTES;
+        desc.putInt(pos, addr).putInt(pos + 4, flags).putInt(pos + 8, len).putInt(pos + 12, offset);
+        count++;
+        data.position(offset + len);
+        return offset;
+    }
+
+    /**
+     * Add write message.
+     *
+     * @param addr Peripheral address.
+     * @param buf Data.
+     * @param off Offset in data.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public I2cTransaction write(final int addr, final byte[] buf, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        data.put(add(addr, 0, len), buf, off, len);
+        return this;
+    }
+
+    /**
+     * Add write message.
+     *
+     * @param addr Peripheral address.
+     * @param buf Data.
+     * @return This transaction.
+     */
+    public I2cTransaction write(final int addr, final byte... buf) {
+        return write(addr, buf, 0, buf.length);
+    }
+
+    /**
+     * Add read message. Read data in place with rx after execute.
+     *
+     * @param addr Peripheral address.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public I2cTransaction read(final int addr, final int len) {
+        add(addr, I2C_M_RD, len);
+        return this;
+    }
+
+    /**
+     * Add read message that is copied into dst after execute. The destination range is checked now, not after the transfer.
+     *
+     * @param addr Peripheral address.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public I2cTransaction read(final int addr, final byte[] dst, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        add(addr, I2C_M_RD, len);
+        dsts[count - 1] = dst;
+        dstOffsets[count - 1] = off;
+        return this;
+    }
+
+    /**
+     * Add register read: write register address then repeated start read.
+     *
+     * @param addr Peripheral address.
+     * @param reg Register address.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public I2cTransaction readReg8(final int addr, final int reg, final byte[] dst, final int off, final int len) {
+        // Check before the register write is added
+        Objects.checkFromIndexSize(off, len, dst.length);
+        return write(addr, (byte) reg).read(addr, dst, off, len);
+    }
+
+    /**
+     * OR flags such as I2C_M_NOSTART or I2C_M_IGNORE_NAK into last message.
+     *
+     * @param flags Message flags.
+     * @return This transaction.
+     */
+    public I2cTransaction flags(final int flags) {
+        if (count == 0) {
+            throw new IllegalStateException("No messages");
+        }
+        final var pos = (count - 1) * DESC_INTS * Integer.BYTES + 4;
+        desc.putInt(pos, desc.getInt(pos) | (flags & 0xffff));
+        return this;
+    }
+
+    /**
+     * Copy read messages to caller arrays. Called by I2cBus.execute after a successful transfer.
+     */
+    public void complete() {
+        for (int i = 0; i < count; i++) {
+            if (dsts[i] != null) {
+                data.get(offset(i), dsts[i], dstOffsets[i], length(i));
+            }
+        }
+    }
+
+    /**
+     * Return byte of message without copying.
+     *
+     * @param message Message index.
+     * @param index Byte index in message.
+     * @return Byte.
+     */
+    public byte rx(final int message, final int index) {
+        if (index < 0 || index >= length(message)) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of range for message %d", index, message));
+        }
+        return data.get(offset(message) + index);
+    }
+
+    /**
+     * Copy message bytes.
+     *
+     * @param message Message index.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @return Bytes copied.
+     */
+    public int rx(final int message, final byte[] dst, final int off) {
+        final var len = length(message);
+        data.get(offset(message), dst, off, len);
+        return len;
+    }
+
+    /**
+     * Return message length.
+     *
+     * @param message Message index.
+     * @return Byte count.
+     */
+    public int length(final int message) {
+        if (message < 0 || message >= count) {
+            throw new IndexOutOfBoundsException(String.format("Message %d out of range for %d messages", message, count));
+        }
+        return desc.getInt(message * DESC_INTS * Integer.BYTES + 8);
+    }
+
+    /**
+     * Return message offset in data arena.
+     *
+     * @param message Message index.
+     * @return Offset.
+     */
+    private int offset(final int message) {
+        return desc.getInt(message * DESC_INTS * Integer.BYTES + 12);
+    }
+
+    /**
+     * Return message count.
+     *
+     * @return Messages.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return read only view of the packed message descriptors in native byte order, 4 ints per message (address, flags, length and
+     * data offset).
+     *
+     * @return Descriptor view.
+     */
+    public ByteBuffer descriptors() {
+        return desc.asReadOnlyBuffer().order(ByteOrder.nativeOrder()).limit(count * DESC_INTS * Integer.BYTES);
+    }
+
+    /**
+     * Return address of message descriptors for I2c.i2cTransferPacked.
+     *
+     * @return Pointer to descriptors.
+     */
+    public long descAddress() {
+        return descAddress;
+    }
+
+    /**
+     * Return address of data arena for I2c.i2cTransferPacked.
+     *
+     * @return Pointer to data.
+     */
+    public long dataAddress() {
+        return dataAddress;
+    }
+}
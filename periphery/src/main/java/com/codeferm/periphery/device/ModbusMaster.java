@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.getDirectBufferAddress;
+import com.codeferm.periphery.Serial;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread-safe Modbus RTU master. Each request is sent and its response received in one native call that keeps the t3.5 silence
+ * before the request and ends the response on t3.5 silence, with t3.5 derived from the baud rate. Silence already spent since the
+ * last response is not waited again. CRC16 is table driven and frames are built in reused direct buffers.
+ *
+ * Reads and writes larger than one frame allows are split into several requests. Failures throw RuntimeException.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+public class ModbusMaster implements AutoCloseable {
+
+    /**
+     * Function codes.
+     */
+    public static final int READ_HOLDING_REGISTERS = 3;
+    public static final int READ_INPUT_REGISTERS = 4;
+    public static final int WRITE_SINGLE_REGISTER = 6;
+    public static final int WRITE_MULTIPLE_REGISTERS = 16;
+    /**
+     * Most registers in one read request.
+     */
+    public static final int MAX_READ = 125;
+    /**
+     * Most registers in one write request.
+     */
+    public static final int MAX_WRITE = 123;
+    /**
+     * Largest RTU frame.
+     */
+    private static final int MAX_FRAME = 256;
+    /**
+     * CRC16 (polynomial 0xa001 reflected) for each byte value.
+     */
+    private static final int[] CRC_TABLE = new int[256];
+
+    /**
+     * Build CRC table.
+     */
+    static {
+        for (int i = 0; i < CRC_TABLE.length; i++) {
+            var crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xa001 : crc >>> 1;
+            }
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * Reentrant lock for thread-safe access to the bus.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Serial port.
+     */
+    private final Serial serial;
+    /**
+     * Close serial port on close.
+     */
+    private final boolean owner;
+    /**
+     * Serial fd.
+     */
+    private final int fd;
+    /**
+     * Request frame.
+     */
+    private final ByteBuffer tx = ByteBuffer.allocateDirect(MAX_FRAME);
+    /**
+     * Request frame address.
+     */
+    private final long txAddress = getDirectBufferAddress(tx);
+    /**
+     * Response frame.
+     */
+    private final ByteBuffer rx = ByteBuffer.allocateDirect(MAX_FRAME);
+    /**
+     * Response frame address.
+     */
+    private final long rxAddress = getDirectBufferAddress(rx);
+    /**
+     * Inter-frame silence (t3.5) in microseconds.
+     */
+    private final int frameGapUs;
+    /**
+     * Silence that ends a response in microseconds.
+     */
+    private int responseGapUs;
+    /**
+     * Time to wait for a response.
+     */
+    private int timeoutMs;
+    /**
+     * End of last transaction from System.nanoTime.
+     */
+    private long lastNs;
+
+    /**
+     * Open serial port and create master.
+     *
+     * @param path Device path (e.g., "/dev/ttyUSB0").
+     * @param baudrate Baud rate.
+     * @param timeoutMs Time to wait for a response in milliseconds.
+     */
+    public ModbusMaster(final String path, final int baudrate, final int timeoutMs) {
+        this(new Serial(path, baudrate), true, timeoutMs);
+    }
+
+    /**
+     * Create master on open serial port, so parity and stop bits can be configured first. The caller closes the port.
+     *
+     * @param serial Open serial port.
+     * @param timeoutMs Time to wait for a response in milliseconds.
+     */
+    public ModbusMaster(final Serial serial, final int timeoutMs) {
+        this(serial, false, timeoutMs);
+    }
+
+    /**
+     * Create master and derive t3.5 from baud rate.
+     *
+     * @param serial Open serial port.
+     * @param owner Close serial port on close.
+     * @param timeoutMs Time to wait for a response in milliseconds.
+     */
+    private ModbusMaster(final Serial serial, final boolean owner, final int timeoutMs) {
+        this.serial = serial;
+        this.owner = owner;
+        this.timeoutMs = timeoutMs;
+        fd = Serial.serialFd(serial.getHandle());
+        final var baudRate = new int[1];
+        if (Serial.serialGetBaudRate(serial.getHandle(), baudRate) < 0) {
+            final var msg = Serial.serialErrMessage(serial.getHandle());
+            close();
+            throw new RuntimeException(msg);
+        }
+        frameGapUs = frameGapUs(baudRate[0]);
+        responseGapUs = frameGapUs;
+        // nanoTime has an arbitrary origin, so 0 is not "long ago". Treat t3.5 as already passed before the first request.
+        lastNs = System.nanoTime() - TimeUnit.MICROSECONDS.toNanos(frameGapUs);
+        log.atDebug().log("Modbus master at {} baud, t3.5 {} us", baudRate[0], frameGapUs);
+    }
+
+    /**
+     * Return t3.5 for baud rate. 3.5 characters of 11 bits, fixed at 1750 us above 19200 baud as the specification recommends.
+     *
+     * @param baudRate Baud rate.
+     * @return Silence in microseconds.
+     */
+    public static int frameGapUs(final int baudRate) {
+        return baudRate > 19200 ? 1750 : (38_500_000 + baudRate - 1) / baudRate;
+    }
+
+    /**
+     * Return Modbus CRC16 of bytes.
+     *
+     * @param buf Data.
+     * @param off Offset.
+     * @param len Byte count.
+     * @return CRC, low byte is sent first.
+     */
+    public static int crc16(final byte[] buf, final int off, final int len) {
+        var crc = 0xffff;
+        for (int i = off; i < off + len; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ buf[i]) & 0xff];
+        }
+        return crc;
+    }
+
+    /**
+     * Return Modbus CRC16 of buffer bytes without changing position.
+     *
+     * @param buf Data.
+     * @param off Index.
+     * @param len Byte count.
+     * @return CRC, low byte is sent first.
+     */
+    public static int crc16(final ByteBuffer buf, final int off, final int len) {
+        var crc = 0xffff;
+        for (int i = off; i < off + len; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ buf.get(i)) & 0xff];
+        }
+        return crc;
+    }
+
+    /**
+     * Start request frame in tx.
+     *
+     * @param slave Slave address.
+     * @param function Function code.
+     * @param address Starting register.
+     * @param value Count or value.
+     */
+    private void request(final int slave, final int function, final int address, final int value) {
+        tx.clear();
+        tx.put((byte) slave).put((byte) function).putShort((short) address).putShort((short) value);
+    }
+
+    /**
+     * Append CRC to request, run transaction and check response.
+     *
+     * @param expected Expected response length including CRC, 0 for broadcast.
+     */
+    private void transact(final int expected) {
+        final var slave = tx.get(0) & 0xff;
+        final var function = tx.get(1) & 0xff;
+        final var crc = crc16(tx, 0, tx.position());
+        tx.put((byte) crc).put((byte) (crc >>> 8));
+        // Only wait for the part of t3.5 that has not passed since the last response
+        final var silenceUs = Math.max(0L, frameGapUs - TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lastNs));
+        final var rc = Serial.serialRtuTransfer(fd, txAddress, tx.position(), rxAddress, expected, timeoutMs, (int) silenceUs,
+                responseGapUs);
+        lastNs = System.nanoTime();
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Slave %d function %d failed: errno %d", slave, function, -rc));
+        }
+        if (expected == 0) {
+            return;
+        }
+        if (rc == 0) {
+            throw new RuntimeException(String.format("Slave %d function %d timed out", slave, function));
+        }
+        if (rc < 5 || crc16(rx, 0, rc - 2) != ((rx.get(rc - 2) & 0xff) | (rx.get(rc - 1) & 0xff) << 8)) {
+            throw new RuntimeException(String.format("Slave %d function %d bad response of %d bytes", slave, function, rc));
+        }
+        if ((rx.get(0) & 0xff) != slave || (rx.get(1) & 0x7f) != function) {
+            throw new RuntimeException(String.format("Slave %d function %d response from slave %d function %d", slave, function,
+                    rx.get(0) & 0xff, rx.get(1) & 0x7f));
+        }
+        if ((rx.get(1) & 0x80) != 0) {
+            throw new RuntimeException(String.format("Slave %d function %d exception %d", slave, function, rx.get(2) & 0xff));
+        }
+        if (rc != expected) {
+            throw new RuntimeException(String.format("Slave %d function %d short response of %d bytes", slave, function, rc));
+        }
+        if (function == WRITE_SINGLE_REGISTER || function == WRITE_MULTIPLE_REGISTERS) {
+            // Address and value or count are echoed
+            if (rx.getInt(2) != tx.getInt(2)) {
+                throw new RuntimeException(String.format("Slave %d function %d echoed address %d value %d, sent %d %d", slave,
+                        function, rx.getShort(2) & 0xffff, rx.getShort(4) & 0xffff, tx.getShort(2) & 0xffff, tx.getShort(4)
+                        & 0xffff));
+            }
+        } else if ((rx.get(2) & 0xff) != expected - 5) {
+            throw new RuntimeException(String.format("Slave %d function %d byte count %d, expected %d", slave, function, rx.get(2)
+                    & 0xff, expected - 5));
+        }
+    }
+
+    /**
+     * Read registers with function 3 or 4, splitting into requests of MAX_READ registers.
+     *
+     * @param slave Slave address (1 to 247, broadcast has no response to read).
+     * @param function READ_HOLDING_REGISTERS or READ_INPUT_REGISTERS.
+     * @param start Starting register.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param count Register count.
+     */
+    public void readRegisters(final int slave, final int function, final int start, final short[] dst, final int off,
+            final int count) {
+        if (slave == 0) {
+            throw new IllegalArgumentException("Slave 0 is broadcast and cannot be read");
+        }
+        lock.lock();
+        try {
+            for (int done = 0; done < count; done += MAX_READ) {
+                final var len = Math.min(MAX_READ, count - done);
+                request(slave, function, start + done, len);
+                transact(5 + len * 2);
+                for (int i = 0; i < len; i++) {
+                    dst[off + done + i] = rx.getShort(3 + i * 2);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read holding registers.
+     *
+     * @param slave Slave address.
+     * @param start Starting register.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param count Register count.
+     */
+    public void readHoldingRegisters(final int slave, final int start, final short[] dst, final int off, final int count) {
+        readRegisters(slave, READ_HOLDING_REGISTERS, start, dst, off, count);
+    }
+
+    /**
+     * Read input registers.
+     *
+     * @param slave Slave address.
+     * @param start Starting register.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @param count Register count.
+     */
+    public void readInputRegisters(final int slave, final int start, final short[] dst, final int off, final int count) {
+        readRegisters(slave, READ_INPUT_REGISTERS, start, dst, off, count);
+    }
+
+    /**
+     * Write one holding register. Slave 0 broadcasts without a response.
+     *
+     * @param slave Slave address.
+     * @param address Register.
+     * @param value Value.
+     */
+    public void writeSingleRegister(final int slave, final int address, final int value) {
+        lock.lock();
+        try {
+            request(slave, WRITE_SINGLE_REGISTER, address, value);
+            transact(slave == 0 ? 0 : 8);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write holding registers, splitting into requests of MAX_WRITE registers. Slave 0 broadcasts without a response.
+     *
+     * @param slave Slave address.
+     * @param start Starting register.
+     * @param src Values.
+     * @param off Offset in values.
+     * @param count Register count.
+     */
+    public void writeMultipleRegisters(final int slave, final int start, final short[] src, final int off, final int count) {
+        lock.lock();
+        try {
+            for (int done = 0; done < count; done += MAX_WRITE) {
+                final var len = Math.min(MAX_WRITE, count - done);
+                request(slave, WRITE_MULTIPLE_REGISTERS, start + done, len);
+                tx.put((byte) (len * 2));
+                for (int i = 0; i < len; i++) {
+                    tx.putShort(src[off + done + i]);
+                }
+                transact(slave == 0 ? 0 : 8);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return t3.5 used before requests.
+     *
+     * @return Silence in microseconds.
+     */
+    public int getFrameGapUs() {
+        return frameGapUs;
+    }
+
+    /**
+     * Set silence that ends a response. USB adapters can pause longer than t3.5 inside a frame, so this may need to be raised.
+     *
+     * @param responseGapUs Silence in microseconds.
+     */
+    public void setResponseGapUs(final int responseGapUs) {
+        lock.lock();
+        try {
+            this.responseGapUs = responseGapUs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set time to wait for a response.
+     *
+     * @param timeoutMs Timeout in milliseconds.
+     */
+    public void setTimeoutMs(final int timeoutMs) {
+        lock.lock();
+        try {
+            this.timeoutMs = timeoutMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close serial port if this master opened it.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (owner) {
+                serial.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls register ranges on many Modbus slaves from one thread. Each poll has its own interval. Polls that are due together on the
+ * same slave and function are merged into one read when the registers between them are at most maxGap, so many small ranges cost
+ * one request. A failed read is reported to every poll it covered and polling continues.
+ *
+ * Handlers run on the poll thread and get a shared array, so copy what is kept.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+public class ModbusPoller implements AutoCloseable {
+
+    /**
+     * Order due polls so mergeable ranges are adjacent.
+     */
+    private static final Comparator<Poll> ORDER = Comparator.<Poll>comparingInt(p -> p.slave).thenComparingInt(p -> p.function)
+            .thenComparingInt(p -> p.start);
+    /**
+     * Lock for registration and lifecycle.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Modbus master.
+     */
+    private final ModbusMaster master;
+    /**
+     * Largest register gap merged into one read.
+     */
+    private final int maxGap;
+    /**
+     * Registered polls. Replaced on registration, so poll thread reads without locking.
+     */
+    private volatile Poll[] polls = new Poll[0];
+    /**
+     * Polls due this round (poll thread only).
+     */
+    private final List<Poll> due = new ArrayList<>();
+    /**
+     * Registers read (poll thread only).
+     */
+    private final short[] values = new short[ModbusMaster.MAX_READ];
+    /**
+     * Requests sent.
+     */
+    private volatile long requests;
+    /**
+     * Poller running.
+     */
+    private volatile boolean running;
+    /**
+     * Poll thread.
+     */
+    private Thread thread;
+
+    /**
+     * Create poller. The caller still owns the master and closes it.
+     *
+     * @param master Modbus master.
+     * @param maxGap Largest register gap merged into one read (0 merges adjacent ranges only).
+     */
+    public ModbusPoller(final ModbusMaster master, final int maxGap) {
+        this.master = master;
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Add poll of registers. Registers must fit in one read.
+     *
+     * @param slave Slave address.
+     * @param function READ_HOLDING_REGISTERS or READ_INPUT_REGISTERS.
+     * @param start Starting register.
+     * @param count Register count.
+     * @param intervalMs Poll interval in milliseconds.
+     * @param handler Handler.
+     */
+    public void add(final int slave, final int function, final int start, final int count, final int intervalMs,
+            final Handler handler) {
+        if (count < 1 || count > ModbusMaster.MAX_READ) {
+            throw new IllegalArgumentException(String.format("Count must be 1 to %d", ModbusMaster.MAX_READ));
+        }
+        lock.lock();
+        try {
+            final var copy = Arrays.copyOf(polls, polls.length + 1);
+            copy[polls.length] = new Poll(slave, function, start, count, TimeUnit.MILLISECONDS.toNanos(intervalMs), handler);
+            polls = copy;
+            LockSupport.unpark(thread);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start poll thread.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (!running) {
+                running = true;
+                thread = Thread.ofPlatform().name(ModbusPoller.class.getSimpleName()).daemon().start(this::run);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Poll due ranges until closed.
+     */
+    private void run() {
+        while (running) {
+            final var now = System.nanoTime();
+            var wait = TimeUnit.MILLISECONDS.toNanos(100);
+            due.clear();
+            for (final var poll : polls) {
+                final var left = poll.next - now;
+                if (left <= 0) {
+                    due.add(poll);
+                } else {
+                    wait = Math.min(wait, left);
+                }
+            }
+            if (due.isEmpty()) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            due.sort(ORDER);
+            var first = 0;
+            while (first < due.size()) {
+                final var head = due.get(first);
+                var end = head.start + head.count;
+                var last = first + 1;
+                // Merge following ranges of same slave and function while they fit in one read
+                while (last < due.size()) {
+                    final var poll = due.get(last);
+                    if (poll.slave != head.slave || poll.function != head.function || poll.start - end > maxGap || Math.max(end,
+                            poll.start + poll.count) - head.start > ModbusMaster.MAX_READ) {
+                        break;
+                    }
+                    end = Math.max(end, poll.start + poll.count);
+                    last++;
+                }
+                read(head.start, end, first, last);
+                first = last;
+            }
+        }
+    }
+
+    /**
+     * Read merged range and hand each poll its registers.
+     *
+     * @param start First register.
+     * @param end Register after last.
+     * @param first First poll in due.
+     * @param last Poll after last in due.
+     */
+    private void read(final int start, final int end, final int first, final int last) {
+        final var head = due.get(first);
+        RuntimeException failure = null;
+        try {
+            requests++;
+            master.readRegisters(head.slave, head.function, start, values, 0, end - start);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int i = first; i < last; i++) {
+            final var poll = due.get(i);
+            try {
+                if (failure == null) {
+                    poll.handler.accept(poll.slave, poll.start, values, poll.start - start, poll.count);
+                } else {
+                    poll.handler.error(poll.slave, poll.start, failure);
+                }
+            } catch (RuntimeException e) {
+                log.error("Poll handler failed", e);
+            }
+        }
+        final var now = System.nanoTime();
+        for (int i = first; i < last; i++) {
+            final var poll = due.get(i);
+            // Keep cadence, but do not queue missed polls
+            poll.next = Math.max(poll.next + poll.intervalNs, now);
+        }
+    }
+
+    /**
+     * Return requests sent, so merging can be checked.
+     *
+     * @return Request count.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Stop poll thread. Does not close the master.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                thread.join();
+                thread = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Poll result handler.
+     */
+    public interface Handler {
+
+        /**
+         * Registers read.
+         *
+         * @param slave Slave address.
+         * @param start Starting register.
+         * @param values Shared array holding the registers.
+         * @param off Offset of start in values.
+         * @param count Register count.
+         */
+        void accept(int slave, int start, short[] values, int off, int count);
+
+        /**
+         * Read failed.
+         *
+         * @param slave Slave address.
+         * @param start Starting register.
+         * @param e Failure.
+         */
+        default void error(final int slave, final int start, final RuntimeException e) {
+        }
+    }
+
+    /**
+     * Registered poll.
+     */
+    private static final class Poll {
+
+        /**
+         * Slave address.
+         */
+        private final int slave;
+        /**
+         * Function code.
+         */
+        private final int function;
+        /**
+         * Starting register.
+         */
+        private final int start;
+        /**
+         * Register count.
+         */
+        private final int count;
+        /**
+         * Interval in nanoseconds.
+         */
+        private final long intervalNs;
+        /**
+         * Handler.
+         */
+        private final Handler handler;
+        /**
+         * Next due time from System.nanoTime (poll thread only after start).
+         */
+        private long next;
+
+        /**
+         * Create poll due now.
+         *
+         * @param slave Slave address.
+         * @param function Function code.
+         * @param start Starting register.
+         * @param count Register count.
+         * @param intervalNs Interval in nanoseconds.
+         * @param handler Handler.
+         */
+        private Poll(final int slave, final int function, final int start, final int count, final long intervalNs,
+                final Handler handler) {
+            this.slave = slave;
+            this.function = function;
+            this.start = start;
+            this.count = count;
+            this.intervalNs = intervalNs;
+            this.handler = handler;
+            this.next = System.nanoTime();
+        }
+    }
+}
@@ -113,6 +113,14 @@ public class Mpu6050 implements AutoCloseable {
     /** <b>[datasheet 2 - p.31]</b> Gyroscope Measurements.
      */
     public static final int MPU6050_REG_ADDR_GYRO_XOUT_H = 0x43;
+    /**
+     * Accelerometer, temperature and gyroscope measurements read in one burst starting at ACCEL_XOUT_H.
+     */
+    private static final int SAMPLE_SIZE = 14;
+    /**
+     * Offset of gyroscope measurements in sample.
+     */
+    private static final int SAMPLE_GYRO = MPU6050_REG_ADDR_GYRO_XOUT_H - MPU6050_REG_ADDR_ACCEL_XOUT_H;
 
     /*
      * -----------------------------------------------------------------------
@@ -160,6 +168,10 @@ public class Mpu6050 implements AutoCloseable {
      * Last timestamp of update.
      */
     private long lastUpdateTime = 0;
+    /**
+     * Reusable sample buffer guarded by lock.
+     */
+    private final byte[] sample = new byte[SAMPLE_SIZE];
 
     /**
      * Snapshot record of all processed MPU data.
@@ -335,11 +347,8 @@ public class Mpu6050 implements AutoCloseable {
     public double[] readScaledAccelerometerValues() {
         lock.lock();
         try {
-            return new double[]{
-                readWord2C(MPU6050_REG_ADDR_ACCEL_XOUT_H) / accelLSBSensitivity,
-                readWord2C(MPU6050_REG_ADDR_ACCEL_XOUT_H + 2) / accelLSBSensitivity,
-                -readWord2C(MPU6050_REG_ADDR_ACCEL_XOUT_H + 4) / accelLSBSensitivity
-            };
+            readSample();
+            return scaledAccelerometerValues();
         } finally {
             lock.unlock();
         }
@@ -353,11 +362,8 @@ public class Mpu6050 implements AutoCloseable {
     public double[] readScaledGyroscopeValues() {
         lock.lock();
         try {
-            return new double[]{
-                readWord2C(MPU6050_REG_ADDR_GYRO_XOUT_H) / gyroLSBSensitivity,
-                readWord2C(MPU6050_REG_ADDR_GYRO_XOUT_H + 2) / gyroLSBSensitivity,
-                readWord2C(MPU6050_REG_ADDR_GYRO_XOUT_H + 4) / gyroLSBSensitivity
-            };
+            readSample();
+            return scaledGyroscopeValues();
         } finally {
             lock.unlock();
         }
@@ -502,8 +508,10 @@ public class Mpu6050 implements AutoCloseable {
     private void updateValues() {
         lock.lock();
         try {
-            double[] acc = readScaledAccelerometerValues();
-            double[] gyro = readScaledGyroscopeValues();
+            // One burst read for both sensors
+            readSample();
+            double[] acc = scaledAccelerometerValues();
+            double[] gyro = scaledGyroscopeValues();
             double dt = Math.abs(System.currentTimeMillis() - lastUpdateTime) / 1000.;
             lastUpdateTime = System.currentTimeMillis();
             double aX = acc[0], aY = acc[1], aZ = acc[2];
@@ -526,15 +534,38 @@ public class Mpu6050 implements AutoCloseable {
     }
 
     /**
-     * Reads a word (2 bytes) from I2C and converts from 2's complement.
+     * Reads accelerometer, temperature and gyroscope measurements in one 14 byte auto-increment transaction.
+     */
+    private void readSample() {
+        if (I2c.i2cReadBlock8(handle, address, (short) MPU6050_REG_ADDR_ACCEL_XOUT_H, sample, 0, SAMPLE_SIZE) != I2c.I2C_SUCCESS) {
+            throw new RuntimeException("Error reading MPU6050 sample");
+        }
+    }
+
+    /**
+     * Decodes accelerations in g from last sample.
      *
-     * @param register starting register.
-     * @return signed integer value.
+     * @return array of [x, y, z] accelerations.
+     */
+    private double[] scaledAccelerometerValues() {
+        return new double[]{
+            I2cBus.getShortBE(sample, 0) / accelLSBSensitivity,
+            I2cBus.getShortBE(sample, 2) / accelLSBSensitivity,
+            -I2cBus.getShortBE(sample, 4) / accelLSBSensitivity
+        };
+    }
+
+    /**
+     * Decodes angular speeds in degrees/sec from last sample.
+     *
+     * @return array of [x, y, z] angular speeds.
      */
-    private int readWord2C(int register) {
-        var regVal = new int[1];
-        I2c.i2cReadWord8(handle, address, (short) register, regVal);
-        return regVal[0];
+    private double[] scaledGyroscopeValues() {
+        return new double[]{
+            I2cBus.getShortBE(sample, SAMPLE_GYRO) / gyroLSBSensitivity,
+            I2cBus.getShortBE(sample, SAMPLE_GYRO + 2) / gyroLSBSensitivity,
+            I2cBus.getShortBE(sample, SAMPLE_GYRO + 4) / gyroLSBSensitivity
+        };
     }
 
     /**
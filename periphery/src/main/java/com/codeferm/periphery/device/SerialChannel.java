@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.bufferAddress;
+import static com.codeferm.periphery.Common.getDirectBufferAddress;
+import static com.codeferm.periphery.Common.jString;
+import com.codeferm.periphery.Serial;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serial port as a NIO channel. A reader thread waits on the tty fd with poll and reads whatever has arrived in one call into a
+ * direct ring buffer, so callers never poll with timeouts and large bursts cost one JNI call. The ring is single producer (reader
+ * thread) and single consumer (readers serialized by a lock) with volatile counters, so no lock is taken on the data path. Data can
+ * be copied out with read or scanned in place with peek and consume.
+ *
+ * Writes are coalesced in a direct buffer and sent when it fills, on flush or on close, like BufferedOutputStream. Call flush after
+ * each batch of small messages.
+ *
+ * pty opens a pseudo-terminal pair, so the other end can be opened as a Serial or Uart for tests, simulators and throughput
+ * benchmarks without hardware.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SerialChannel implements ReadableByteChannel, WritableByteChannel {
+
+    /**
+     * Hangup errno values treated as end of stream.
+     */
+    private static final int EIO = 5;
+    private static final int EPIPE = 32;
+    /**
+     * Reader poll timeout, so close is noticed.
+     */
+    private static final int POLL_MS = 100;
+    /**
+     * Serializes readers, so there is one ring consumer.
+     */
+    private final ReentrantLock readLock = new ReentrantLock();
+    /**
+     * Serializes writers.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Lock for lifecycle.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Serial handle, null for pty.
+     */
+    private final Serial serial;
+    /**
+     * File descriptor read and written.
+     */
+    private final int fd;
+    /**
+     * Slave fd held open for pty, otherwise -1.
+     */
+    private final int slaveFd;
+    /**
+     * Slave path for pty, otherwise null.
+     */
+    private final String ptyName;
+    /**
+     * Receive ring.
+     */
+    private final ByteBuffer ring;
+    /**
+     * Receive ring address.
+     */
+    private final long ringAddress;
+    /**
+     * Read only view handed out by peek.
+     */
+    private final ByteBuffer view;
+    /**
+     * Ring capacity minus one.
+     */
+    private final int mask;
+    /**
+     * Bytes produced (reader thread only writes).
+     */
+    private volatile long head;
+    /**
+     * Bytes consumed (consumer only writes).
+     */
+    private volatile long tail;
+    /**
+     * Negative errno that stopped the reader thread, otherwise 0.
+     */
+    private volatile int error;
+    /**
+     * Consumer waiting for data.
+     */
+    private volatile Thread consumer;
+    /**
+     * Coalesced writes.
+     */
+    private final ByteBuffer writeBuf;
+    /**
+     * Coalesced writes address.
+     */
+    private final long writeAddress;
+    /**
+     * Channel open.
+     */
+    private volatile boolean open;
+    /**
+     * Reader thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Open serial port and start reader thread.
+     *
+     * @param path Device path (e.g., "/dev/ttyUSB0").
+     * @param baudrate Baud rate.
+     * @param ringSize Receive ring size in bytes (power of 2).
+     * @param writeSize Write buffer size in bytes.
+     */
+    public SerialChannel(final String path, final int baudrate, final int ringSize, final int writeSize) {
+        this(new Serial(path, baudrate), -1, -1, null, ringSize, writeSize);
+    }
+
+    /**
+     * Open serial port with 64K receive ring and 4K write buffer.
+     *
+     * @param path Device path (e.g., "/dev/ttyUSB0").
+     * @param baudrate Baud rate.
+     */
+    public SerialChannel(final String path, final int baudrate) {
+        this(path, baudrate, 65536, 4096);
+    }
+
+    /**
+     * Create channel over Serial handle or pty master and start reader thread.
+     *
+     * @param serial Serial handle or null.
+     * @param masterFd pty master fd if serial is null.
+     * @param slaveFd pty slave fd if serial is null.
+     * @param ptyName pty slave path if serial is null.
+     * @param ringSize Receive ring size in bytes (power of 2).
+     * @param writeSize Write buffer size in bytes.
+     */
+    private SerialChannel(final Serial serial, final int masterFd, final int slaveFd, final String ptyName, final int ringSize,
+            final int writeSize) {
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+            close(serial, masterFd, slaveFd);
+            throw new IllegalArgumentException(String.format("Ring size %d is not a power of 2", ringSize));
+        }
+        this.serial = serial;
+        this.fd = serial == null ? masterFd : Serial.serialFd(serial.getHandle());
+        this.slaveFd = slaveFd;
+        this.ptyName = ptyName;
+        ring = ByteBuffer.allocateDirect(ringSize);
+        ringAddress = getDirectBufferAddress(ring);
+        view = ring.asReadOnlyBuffer();
+        mask = ringSize - 1;
+        writeBuf = ByteBuffer.allocateDirect(writeSize);
+        writeAddress = getDirectBufferAddress(writeBuf);
+        open = true;
+        thread = Thread.ofPlatform().name(SerialChannel.class.getSimpleName()).daemon().start(this::run);
+    }
+
+    /**
+     * Open pseudo-terminal pair and return channel on the master. Open ptyName as a Serial or Uart for the other end.
+     *
+     * @param ringSize Receive ring size in bytes (power of 2).
+     * @param writeSize Write buffer size in bytes.
+     * @return Channel.
+     */
+    public static SerialChannel pty(final int ringSize, final int writeSize) {
+        final var fds = new int[2];
+        final var name = new byte[64];
+        final var rc = Serial.serialPtyOpen(fds, name, name.length);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("pty open failed: errno %d", -rc));
+        }
+        return new SerialChannel(null, fds[0], fds[1], jString(name), ringSize, writeSize);
+    }
+
+    /**
+     * Open pseudo-terminal pair with 64K receive ring and 4K write buffer.
+     *
+     * @return Channel.
+     */
+    public static SerialChannel pty() {
+        return pty(65536, 4096);
+    }
+
+    /**
+     * Fill ring until closed or the fd fails.
+     */
+    private void run() {
+        final var capacity = mask + 1;
+        while (open) {
+            final var free = capacity - (int) (head - tail);
+            if (free == 0) {
+                // Consumer unparks after consuming
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(POLL_MS));
+                continue;
+            }
+            final var off = (int) head & mask;
+            final var rc = Serial.serialFdRead(fd, ringAddress + off, Math.min(free, capacity - off), POLL_MS);
+            if (rc > 0) {
+                head += rc;
+                LockSupport.unpark(consumer);
+            } else if (rc < 0) {
+                error = rc;
+                LockSupport.unpark(consumer);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Wait for data in ring. An interrupted wait closes the channel and keeps the interrupt status, like other NIO channels.
+     *
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @return Bytes available, 0 on timeout or -1 at end of stream.
+     * @throws IOException If channel is closed, waiting thread was interrupted or reader failed.
+     */
+    private int await(final int timeoutMs) throws IOException {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        consumer = Thread.currentThread();
+        try {
+            int available;
+            while ((available = (int) (head - tail)) == 0) {
+                if (!open) {
+                    throw new ClosedChannelException();
+                }
+                if (error == -EPIPE || error == -EIO) {
+                    return -1;
+                } else if (error != 0) {
+                    throw new IOException(String.format("Serial read failed: errno %d", -error));
+                }
+                if (timeoutMs < 0) {
+                    LockSupport.park(this);
+                } else {
+                    final var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    // Clear status so close can join reader thread
+                    try {
+                        close();
+                    } finally {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new ClosedByInterruptException();
+                }
+            }
+            return available;
+        } finally {
+            consumer = null;
+        }
+    }
+
+    /**
+     * Read into dst, blocking until at least one byte is available.
+     *
+     * @param dst Destination.
+     * @return Bytes read or -1 at end of stream.
+     * @throws IOException If channel is closed or reader failed.
+     */
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        return read(dst, -1);
+    }
+
+    /**
+     * Read into dst, waiting up to timeoutMs for at least one byte.
+     *
+     * @param dst Destination.
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @return Bytes read, 0 on timeout or -1 at end of stream.
+     * @throws IOException If channel is closed or reader failed.
+     */
+    public int read(final ByteBuffer dst, final int timeoutMs) throws IOException {
+        readLock.lock();
+        try {
+            final var available = await(timeoutMs);
+            if (available <= 0) {
+                return available;
+            }
+            var len = Math.min(available, dst.remaining());
+            final var off = (int) tail & mask;
+            // Copy up to end of ring, then the wrapped part
+            final var first = Math.min(len, mask + 1 - off);
+            dst.put(dst.position(), ring, off, first);
+            dst.put(dst.position() + first, ring, 0, len - first);
+            dst.position(dst.position() + len);
+            release(len);
+            return len;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Return read only view of received bytes up to the end of the ring without copying. The view is reused, so consume what was
+     * used before the next peek. Only one thread should peek and consume at a time.
+     *
+     * @param timeoutMs Timeout in milliseconds, 0 for non-blocking or negative for blocking.
+     * @return View with nothing remaining on timeout or null at end of stream.
+     * @throws IOException If channel is closed or reader failed.
+     */
+    public ByteBuffer peek(final int timeoutMs) throws IOException {
+        readLock.lock();
+        try {
+            final var available = await(timeoutMs);
+            if (available < 0) {
+                return null;
+            }
+            final var off = (int) tail & mask;
+            view.clear().position(off).limit(off + Math.min(available, mask + 1 - off));
+            return view;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Release bytes returned by peek.
+     *
+     * @param len Bytes used.
+     */
+    public void consume(final int len) {
+        readLock.lock();
+        try {
+            if (len < 0 || len > head - tail) {
+                throw new IllegalArgumentException(String.format("Cannot consume %d of %d bytes", len, head - tail));
+            }
+            release(len);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Advance tail and wake reader thread in case ring was full.
+     *
+     * @param len Bytes consumed.
+     */
+    private void release(final int len) {
+        tail += len;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Return bytes waiting in ring.
+     *
+     * @return Bytes available.
+     */
+    public int available() {
+        return (int) (head - tail);
+    }
+
+    /**
+     * Buffer src and send when write buffer fills. Large direct buffers are written without copying.
+     *
+     * @param src Source.
+     * @return Bytes written (always all remaining).
+     * @throws IOException If channel is closed or write failed.
+     */
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        writeLock.lock();
+        try {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            final var len = src.remaining();
+            if (len >= writeBuf.capacity() && src.isDirect()) {
+                drain();
+                final var rc = Serial.serialFdWrite(fd, bufferAddress(src), len);
+                if (rc < 0) {
+                    throw new IOException(String.format("Serial write failed: errno %d", -rc));
+                }
+                src.position(src.position() + len);
+                return len;
+            }
+            while (src.hasRemaining()) {
+                if (!writeBuf.hasRemaining()) {
+                    drain();
+                }
+                final var count = Math.min(src.remaining(), writeBuf.remaining());
+                writeBuf.put(writeBuf.position(), src, src.position(), count);
+                writeBuf.position(writeBuf.position() + count);
+                src.position(src.position() + count);
+            }
+            return len;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Send buffered writes.
+     *
+     * @throws IOException If channel is closed or write failed.
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            drain();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write out write buffer. Caller holds writeLock.
+     *
+     * @throws IOException If write failed.
+     */
+    private void drain() throws IOException {
+        if (writeBuf.position() > 0) {
+            final var rc = Serial.serialFdWrite(fd, writeAddress, writeBuf.position());
+            writeBuf.clear();
+            if (rc < 0) {
+                throw new IOException(String.format("Serial write failed: errno %d", -rc));
+            }
+        }
+    }
+
+    /**
+     * Return pty slave path.
+     *
+     * @return Slave path or null if not a pty.
+     */
+    public String ptyName() {
+        return ptyName;
+    }
+
+    /**
+     * Return channel state.
+     *
+     * @return True if open.
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Flush writes, stop reader thread and close serial port or pty. The reader thread is joined even if the caller is
+     * interrupted, so the fds are always closed and never closed under a running reader.
+     *
+     * @throws IOException If final flush failed.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!open) {
+                return;
+            }
+            IOException failure = null;
+            writeLock.lock();
+            try {
+                drain();
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                open = false;
+                writeLock.unlock();
+            }
+            var interrupted = false;
+            try {
+                LockSupport.unpark(thread);
+                // Keep joining, reader must not poll fds that are closed and reused
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                LockSupport.unpark(consumer);
+            } finally {
+                close(serial, fd, slaveFd);
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close Serial handle or pty fds.
+     *
+     * @param serial Serial handle or null.
+     * @param masterFd pty master fd if serial is null.
+     * @param slaveFd pty slave fd if serial is null.
+     */
+    private static void close(final Serial serial, final int masterFd, final int slaveFd) {
+        if (serial != null) {
+            serial.close();
+        } else {
+            Serial.serialFdClose(masterFd);
+            Serial.serialFdClose(slaveFd);
+        }
+    }
+}
@@ -4,6 +4,7 @@
 package com.codeferm.periphery.device;
 
 import com.codeferm.periphery.Spi;
+import java.nio.ByteBuffer;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
 
@@ -56,7 +57,7 @@ public class SpiBus implements AutoCloseable {
     }
 
     /**
-     * Shift out txBuf while shifting in rxBuf.
+     * Shift out txBuf while shifting in rxBuf. Transfers larger than spidev bufsiz are split into chunks.
      *
      * @param txBuf Transmit buffer.
      * @param rxBuf Receive buffer.
@@ -66,7 +67,78 @@ public class SpiBus implements AutoCloseable {
     public int transfer(final byte[] txBuf, final byte[] rxBuf, final long len) {
         lock.lock();
         try {
-            return Spi.spiTransfer(handle, txBuf, rxBuf, len);
+            return Spi.spiTransfer(handle, txBuf, 0, rxBuf, 0, (int) len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shift out len bytes of txBuf starting at txOff while shifting in to rxBuf starting at rxOff.
+     *
+     * @param txBuf Transmit buffer.
+     * @param txOff Offset in transmit buffer.
+     * @param rxBuf Receive buffer.
+     * @param rxOff Offset in receive buffer.
+     * @param len Byte count.
+     * @return 0 on success.
+     */
+    public int transfer(final byte[] txBuf, final int txOff, final byte[] rxBuf, final int rxOff, final int len) {
+        lock.lock();
+        try {
+            return Spi.spiTransfer(handle, txBuf, txOff, rxBuf, rxOff, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shift out len bytes of buf starting at off without receiving. Use for write-only devices.
+     *
+     * @param buf Transmit buffer.
+     * @param off Offset in buffer.
+     * @param len Byte count.
+     * @return 0 on success.
+     */
+    public int write(final byte[] buf, final int off, final int len) {
+        lock.lock();
+        try {
+            return Spi.spiWrite(handle, buf, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shift out direct txBuf position to limit while shifting in to direct rxBuf. No Java array is copied.
+     *
+     * @param txBuf Direct transmit buffer.
+     * @param rxBuf Direct receive buffer or null to discard.
+     * @return 0 on success.
+     */
+    public int transfer(final ByteBuffer txBuf, final ByteBuffer rxBuf) {
+        lock.lock();
+        try {
+            return Spi.spiTransfer(handle, txBuf, rxBuf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Submit all segments of transaction in one SPI_IOC_MESSAGE ioctl.
+     *
+     * @param transaction Transaction with at least one segment.
+     * @return Total bytes transferred.
+     */
+    public int execute(final SpiTransaction transaction) {
+        lock.lock();
+        try {
+            final var rc = Spi.spiMessage(handle, transaction.address(), transaction.size());
+            if (rc < 0) {
+                throw new RuntimeException(String.format("SPI message of %d segments failed: errno %d", transaction.size(), -rc));
+            }
+            return rc;
         } finally {
             lock.unlock();
         }
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.device;
+
+import static com.codeferm.periphery.Common.getDirectBufferAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Reusable multi-segment SPI message. Segments are packed as struct spi_ioc_transfer entries into preallocated native memory with
+ * their data in a native arena, so a command, its parameters and data go out in one SPI_IOC_MESSAGE ioctl through
+ * SpiBus.execute. Per-segment modifiers apply to the last segment added. Call clear to reuse without allocating.
+ *
+ * spidev limits the total tx and rx bytes of one message to /sys/module/spidev/parameters/bufsiz.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SpiTransaction {
+
+    /**
+     * Size of struct spi_ioc_transfer.
+     */
+    private static final int XFER_SIZE = 32;
+    /**
+     * Most segments SPI_IOC_MESSAGE can encode.
+     */
+    public static final int MAX_SEGMENTS = 511;
+    /**
+     * Field offsets in struct spi_ioc_transfer.
+     */
+    private static final int TX_BUF = 0;
+    private static final int RX_BUF = 8;
+    private static final int LEN = 16;
+    private static final int SPEED_HZ = 20;
+    private static final int DELAY_USECS = 24;
+    private static final int BITS_PER_WORD = 26;
+    private static final int CS_CHANGE = 27;
+    /**
+     * Transfer array.
+     */
+    private final ByteBuffer xfers;
+    /**
+     * Transfer array address.
+     */
+    private final long xfersAddress;
+    /**
+     * Data arena.
+     */
+    private final ByteBuffer data;
+    /**
+     * Data arena address.
+     */
+    private final long dataAddress;
+    /**
+     * Arena offset of each segment.
+     */
+    private final int[] offsets;
+    /**
+     * Segment count.
+     */
+    private int count;
+
+    /**
+     * Allocate native transfer array and data arena.
+     *
+     * @param maxSegments Maximum segments (up to MAX_SEGMENTS).
+     * @param capacity Data arena size in bytes.
+     */
+    public SpiTransaction(final int maxSegments, final int capacity) {
+        if (maxSegments < 1 || maxSegments > MAX_SEGMENTS) {
+            throw new IllegalArgumentException(String.format("Segments must be 1 to %d", MAX_SEGMENTS));
+        }
+        xfers = ByteBuffer.allocateDirect(maxSegments * XFER_SIZE).order(ByteOrder.nativeOrder());
+        xfersAddress = getDirectBufferAddress(xfers);
+        data = ByteBuffer.allocateDirect(capacity);
+        dataAddress = getDirectBufferAddress(data);
+        offsets = new int[maxSegments];
+    }
+
+    /**
+     * Remove all segments.
+     *
+     * @return This transaction.
+     */
+    public SpiTransaction clear() {
+        count = 0;
+        data.clear();
+        return this;
+    }
+
+    /**
+     * Add segment with len bytes of arena space.
+     *
+     * @param len Segment length.
+     * @param tx Segment transmits arena data.
+     * @param rx Segment receives into arena.
+     * @return Arena offset of segment.
+     */
+    private int add(final int len, final boolean tx, final boolean rx) {
+        if (len < 0) {
+            throw new IllegalArgumentException(String.format("Segment length %d is negative", len));
+        }
+        if (count == offsets.length) {
+            throw new IllegalStateException(String.format("Transaction full at %d segments", count));
+        }
+        if (len > data.remaining()) {
+            throw new IllegalStateException(String.format("Data arena has %d bytes remaining, %d needed", data.remaining(), len));
+        }
+        final var offset = data.position();
+        final var pos = count * XFER_SIZE;
+        // Zero speed, delay, bits per word and cs_change use device defaults
+        xfers.putLong(pos + TX_BUF, tx ? dataAddress + offset : 0).putLong(pos + RX_BUF, rx ? dataAddress + offset : 0).putInt(pos
+                + LEN, len).putInt(pos + SPEED_HZ, 0).putLong(pos + DELAY_USECS, 0);
+        offsets[count++] = offset;
+        data.position(offset + len);
+        return offset;
+    }
+
+    /**
+     * Add transmit only segment.
+     *
+     * @param buf Data.
+     * @param off Offset in data.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public SpiTransaction write(final byte[] buf, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        data.put(add(len, true, false), buf, off, len);
+        return this;
+    }
+
+    /**
+     * Add transmit only segment.
+     *
+     * @param buf Data.
+     * @return This transaction.
+     */
+    public SpiTransaction write(final byte... buf) {
+        return write(buf, 0, buf.length);
+    }
+
+    /**
+     * Add full duplex segment. Read received bytes with rx after execute.
+     *
+     * @param buf Data.
+     * @param off Offset in data.
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public SpiTransaction transfer(final byte[] buf, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        data.put(add(len, true, true), buf, off, len);
+        return this;
+    }
+
+    /**
+     * Add receive only segment. spidev shifts out zeros. Read received bytes with rx after execute.
+     *
+     * @param len Byte count.
+     * @return This transaction.
+     */
+    public SpiTransaction read(final int len) {
+        add(len, false, true);
+        return this;
+    }
+
+    /**
+     * Set clock speed of last segment.
+     *
+     * @param hz Speed in hertz, 0 for device default.
+     * @return This transaction.
+     */
+    public SpiTransaction speed(final int hz) {
+        xfers.putInt(last() + SPEED_HZ, hz);
+        return this;
+    }
+
+    /**
+     * Set bits per word of last segment.
+     *
+     * @param bits Bits per word, 0 for device default.
+     * @return This transaction.
+     */
+    public SpiTransaction bitsPerWord(final int bits) {
+        xfers.put(last() + BITS_PER_WORD, (byte) bits);
+        return this;
+    }
+
+    /**
+     * Set delay after last segment before next segment or CS change.
+     *
+     * @param usecs Delay in microseconds.
+     * @return This transaction.
+     */
+    public SpiTransaction delayUsecs(final int usecs) {
+        xfers.putShort(last() + DELAY_USECS, (short) usecs);
+        return this;
+    }
+
+    /**
+     * Deselect device after last segment before next segment starts.
+     *
+     * @param csChange True to toggle CS.
+     * @return This transaction.
+     */
+    public SpiTransaction csChange(final boolean csChange) {
+        xfers.put(last() + CS_CHANGE, (byte) (csChange ? 1 : 0));
+        return this;
+    }
+
+    /**
+     * Return position of last segment in transfer array.
+     *
+     * @return Byte position.
+     */
+    private int last() {
+        if (count == 0) {
+            throw new IllegalStateException("No segments");
+        }
+        return (count - 1) * XFER_SIZE;
+    }
+
+    /**
+     * Copy bytes received by segment.
+     *
+     * @param segment Segment index.
+     * @param dst Destination.
+     * @param off Offset in destination.
+     * @return Bytes copied.
+     */
+    public int rx(final int segment, final byte[] dst, final int off) {
+        final var len = length(segment);
+        data.get(offsets[segment], dst, off, len);
+        return len;
+    }
+
+    /**
+     * Return byte received by segment without copying.
+     *
+     * @param segment Segment index.
+     * @param index Byte index in segment.
+     * @return Byte.
+     */
+    public byte rx(final int segment, final int index) {
+        if (index < 0 || index >= length(segment)) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of range for segment %d", index, segment));
+        }
+        return data.get(offsets[segment] + index);
+    }
+
+    /**
+     * Return segment length.
+     *
+     * @param segment Segment index.
+     * @return Byte count.
+     */
+    public int length(final int segment) {
+        if (segment < 0 || segment >= count) {
+            throw new IndexOutOfBoundsException(String.format("Segment %d out of range for %d segments", segment, count));
+        }
+        return xfers.getInt(segment * XFER_SIZE + LEN);
+    }
+
+    /**
+     * Return segment count.
+     *
+     * @return Segments.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return read only view of the packed struct spi_ioc_transfer array in native byte order, one 32 byte entry per segment.
+     *
+     * @return Transfer array view.
+     */
+    public ByteBuffer transfers() {
+        return xfers.asReadOnlyBuffer().order(ByteOrder.nativeOrder()).limit(count * XFER_SIZE);
+    }
+
+    /**
+     * Return address of transfer array for Spi.spiMessage.
+     *
+     * @return Pointer to struct spi_ioc_transfer array.
+     */
+    public long address() {
+        return xfersAddress;
+    }
+}
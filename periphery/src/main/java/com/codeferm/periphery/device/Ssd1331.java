@@ -8,13 +8,14 @@ import static com.codeferm.periphery.Gpio.GPIO_DIR_OUT;
 import com.codeferm.periphery.Spi;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * SSD1331 96x64 RGB OLED driver using optimized memory access. The kernel may limit the SPI buffer to 4K. Check with cat
- * /sys/module/spidev/parameters/bufsiz and adjust greater than 12,288 bytes. I just set it to 64K.
+ * SSD1331 96x64 RGB OLED driver using optimized memory access. The kernel may limit the SPI buffer to 4K (cat
+ * /sys/module/spidev/parameters/bufsiz), so 12,288 byte frames are split into bufsiz chunks without any kernel tuning.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -213,6 +214,10 @@ public class Ssd1331 implements AutoCloseable {
      */
     @Getter
     private final int height = 64;
+    /**
+     * Direct RGB565 frame buffer reused for every frame.
+     */
+    private final ByteBuffer frame = ByteBuffer.allocateDirect(width * height * 2);
 
     /**
      * Initialize hardware with SPI and GPIO handles.
@@ -242,7 +247,7 @@ public class Ssd1331 implements AutoCloseable {
     public final void writeCommand(final byte[] data) {
         // DC pin LOW for command mode
         Gpio.gpioWrite(dcHandle, false);
-        final var rc = Spi.spiTransfer(spiHandle, data, new byte[data.length], data.length);
+        final var rc = Spi.spiWrite(spiHandle, data, 0, data.length);
         // Embedded error check
         if (rc < 0) {
             throw new RuntimeException(String.format("SPI Command failed: %d", rc));
@@ -257,7 +262,22 @@ public class Ssd1331 implements AutoCloseable {
     public final void writeData(final byte[] data) {
         // DC pin HIGH for data mode
         Gpio.gpioWrite(dcHandle, true);
-        final var rc = Spi.spiTransfer(spiHandle, data, new byte[data.length], data.length);
+        final var rc = Spi.spiWrite(spiHandle, data, 0, data.length);
+        // Embedded error check
+        if (rc < 0) {
+            throw new RuntimeException(String.format("SPI Data failed: %d", rc));
+        }
+    }
+
+    /**
+     * Sends direct buffer position to limit with DC pin HIGH. Bytes go straight from native memory to spidev.
+     *
+     * @param data Direct data buffer.
+     */
+    public final void writeData(final ByteBuffer data) {
+        // DC pin HIGH for data mode
+        Gpio.gpioWrite(dcHandle, true);
+        final var rc = Spi.spiTransfer(spiHandle, data, null);
         // Embedded error check
         if (rc < 0) {
             throw new RuntimeException(String.format("SPI Data failed: %d", rc));
@@ -273,7 +293,7 @@ public class Ssd1331 implements AutoCloseable {
             Gpio.gpioWrite(dcHandle, false);
             Gpio.gpioWrite(resHandle, true);
             // Wakeup sync pulse
-            Spi.spiTransfer(spiHandle, new byte[]{0}, new byte[1], 1);
+            Spi.spiWrite(spiHandle, new byte[]{0}, 0, 1);
             TimeUnit.MILLISECONDS.sleep(100);
             // Perform hardware reset
             Gpio.gpioWrite(resHandle, false);
@@ -341,9 +361,9 @@ public class Ssd1331 implements AutoCloseable {
         writeCommand(new byte[]{SET_ROW_ADDRESS, (byte) 0, (byte) (height - 1)});
         // Fast manual bit-packing from internal int array
         final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
-        final byte[] output = new byte[pixels.length * 2];
+        frame.clear();
         // Manual loop handles RGB888 -> RGB565 conversion and Endianness
-        for (int i = 0, j = 0; i < pixels.length; i++) {
+        for (int i = 0; i < pixels.length; i++) {
             final int p = pixels[i];
             // Extract & pack RGB 565
             final int r = (p >> 19) & 0x1F;
@@ -351,11 +371,10 @@ public class Ssd1331 implements AutoCloseable {
             final int b = (p >> 3) & 0x1F;
             final int packed = (r << 11) | (g << 5) | b;
             // Big-Endian packing for SPI
-            output[j++] = (byte) (packed >> 8);
-            output[j++] = (byte) (packed & 0xFF);
+            frame.putShort((short) packed);
         }
         // Send full frame buffer in one transfer
-        writeData(output);
+        writeData(frame.flip());
         // Lock bus by pulling DC LOW with a NO_OP command
         writeCommand(new byte[]{NO_OP});
     }
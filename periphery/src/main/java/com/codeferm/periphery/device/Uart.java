@@ -3,7 +3,9 @@
  */
 package com.codeferm.periphery.device;
 
+import static com.codeferm.periphery.Common.bufferAddress;
 import com.codeferm.periphery.Serial;
+import java.nio.ByteBuffer;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
 
@@ -11,6 +13,9 @@ import lombok.extern.slf4j.Slf4j;
  * Thread-safe Serial (UART) wrapper for Linux termios tty devices.
  * This class encapsulates the hardware handle to prevent subverting thread safety.
  *
+ * Reads and writes have independent locks, so a blocking read never delays a write and traffic runs full duplex. Configuration
+ * uses a third lock and close takes all of them.
+ *
  * @author Steven P. Goldsmith
  * @version 1.0.0
  * @since 1.0.0
@@ -19,9 +24,22 @@ import lombok.extern.slf4j.Slf4j;
 public class Uart implements AutoCloseable {
 
     /**
-     * Reentrant lock for thread-safe access to serial hardware.
+     * Hangup errno values treated as end of stream.
+     */
+    private static final int EIO = 5;
+    private static final int EPIPE = 32;
+    /**
+     * Serializes readers.
+     */
+    private final ReentrantLock readLock = new ReentrantLock();
+    /**
+     * Serializes writers and flush.
      */
-    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Serializes configuration and status calls.
+     */
+    private final ReentrantLock configLock = new ReentrantLock();
 
     /**
      * Serial periphery wrapper.
@@ -47,12 +65,55 @@ public class Uart implements AutoCloseable {
      * @return Number of bytes actually read.
      */
     public int read(final byte[] buf, final int timeoutMs) {
-        lock.lock();
+        readLock.lock();
         try {
             // Internal use of handle via serial.getHandle()
             return Serial.serialRead(serial.getHandle(), buf, buf.length, timeoutMs);
         } finally {
-            lock.unlock();
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Read data from the serial port into direct buffer position to limit. Position is advanced by bytes read.
+     *
+     * @param buf       Direct read buffer.
+     * @param timeoutMs Timeout in milliseconds (0 for non-blocking, negative for blocking).
+     * @return Number of bytes actually read.
+     */
+    public int read(final ByteBuffer buf, final int timeoutMs) {
+        readLock.lock();
+        try {
+            return Serial.serialRead(serial.getHandle(), buf, timeoutMs);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Wait for input, then read what is available into direct buffer position to limit with one read. Unlike read this returns as
+     * soon as any data arrives, so stream decoders are not delayed until the buffer fills. Position is advanced by bytes read.
+     *
+     * @param buf       Direct read buffer.
+     * @param timeoutMs Timeout in milliseconds (0 for non-blocking, negative for blocking).
+     * @return Number of bytes read, 0 on timeout or -1 on hangup.
+     * @throws RuntimeException If read failed for a reason other than hangup.
+     */
+    public int readAvailable(final ByteBuffer buf, final int timeoutMs) {
+        readLock.lock();
+        try {
+            final var rc = Serial.serialFdRead(Serial.serialFd(serial.getHandle()), bufferAddress(buf), buf.remaining(), timeoutMs);
+            if (rc > 0) {
+                buf.position(buf.position() + rc);
+            }
+            if (rc == -EPIPE || rc == -EIO) {
+                return -1;
+            } else if (rc < 0) {
+                throw new RuntimeException(String.format("Read failed: errno %d", -rc));
+            }
+            return rc;
+        } finally {
+            readLock.unlock();
         }
     }
 
@@ -63,11 +124,26 @@ public class Uart implements AutoCloseable {
      * @return Number of bytes actually written.
      */
     public int write(final byte[] buf) {
-        lock.lock();
+        writeLock.lock();
         try {
             return Serial.serialWrite(serial.getHandle(), buf, buf.length);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write direct buffer position to limit to the serial port. Position is advanced by bytes written.
+     *
+     * @param buf Direct buffer containing data to be written.
+     * @return Number of bytes actually written.
+     */
+    public int write(final ByteBuffer buf) {
+        writeLock.lock();
+        try {
+            return Serial.serialWrite(serial.getHandle(), buf);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -75,11 +151,11 @@ public class Uart implements AutoCloseable {
      * Flush the serial write buffer.
      */
     public void flush() {
-        lock.lock();
+        writeLock.lock();
         try {
             Serial.serialFlush(serial.getHandle());
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
     }
 
@@ -89,13 +165,13 @@ public class Uart implements AutoCloseable {
      * @return The baud rate as an integer.
      */
     public int getBaudRate() {
-        lock.lock();
+        configLock.lock();
         try {
             final var val = new int[1];
             Serial.serialGetBaudRate(serial.getHandle(), val);
             return val[0];
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -105,11 +181,11 @@ public class Uart implements AutoCloseable {
      * @param baudRate The desired baud rate.
      */
     public void setBaudRate(final int baudRate) {
-        lock.lock();
+        configLock.lock();
         try {
             Serial.serialSetBaudRate(serial.getHandle(), baudRate);
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -119,13 +195,13 @@ public class Uart implements AutoCloseable {
      * @return Number of data bits (typically 5, 6, 7, or 8).
      */
     public int getDataBits() {
-        lock.lock();
+        configLock.lock();
         try {
             final var val = new int[1];
             Serial.serialGetDataBits(serial.getHandle(), val);
             return val[0];
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -135,11 +211,11 @@ public class Uart implements AutoCloseable {
      * @param dataBits The number of bits per character.
      */
     public void setDataBits(final int dataBits) {
-        lock.lock();
+        configLock.lock();
         try {
             Serial.serialSetDataBits(serial.getHandle(), dataBits);
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -149,13 +225,13 @@ public class Uart implements AutoCloseable {
      * @return Parity mode (0: None, 1: Odd, 2: Even).
      */
     public int getParity() {
-        lock.lock();
+        configLock.lock();
         try {
             final var val = new int[1];
             Serial.serialGetParity(serial.getHandle(), val);
             return val[0];
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -165,11 +241,11 @@ public class Uart implements AutoCloseable {
      * @param parity The parity mode to set.
      */
     public void setParity(final int parity) {
-        lock.lock();
+        configLock.lock();
         try {
             Serial.serialSetParity(serial.getHandle(), parity);
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -179,13 +255,13 @@ public class Uart implements AutoCloseable {
      * @return Number of bytes waiting in the input queue.
      */
     public int getInputWaiting() {
-        lock.lock();
+        configLock.lock();
         try {
             final var val = new int[1];
             Serial.serialInputWaiting(serial.getHandle(), val);
             return val[0];
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -196,11 +272,11 @@ public class Uart implements AutoCloseable {
      */
     @Override
     public String toString() {
-        lock.lock();
+        configLock.lock();
         try {
             return Serial.serialToString(serial.getHandle());
         } finally {
-            lock.unlock();
+            configLock.unlock();
         }
     }
 
@@ -209,11 +285,16 @@ public class Uart implements AutoCloseable {
      */
     @Override
     public void close() {
-        lock.lock();
+        // Same order everywhere, so close cannot deadlock
+        readLock.lock();
+        writeLock.lock();
+        configLock.lock();
         try {
             serial.close();
         } finally {
-            lock.unlock();
+            configLock.unlock();
+            writeLock.unlock();
+            readLock.unlock();
         }
     }
 }
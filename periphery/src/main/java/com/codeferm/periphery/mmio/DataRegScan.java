@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+/**
+ * Pass and decode logic of the single pass data register scan used by Gen. Pin i is given code i + 1. For each bit of the code
+ * every pin with that bit set is driven high and the register block is compared to a baseline, so a changed register bit's on/off
+ * pattern across passes is the code of the pin that owns it. That is log2(pins) + 1 snapshots instead of two per pin. No I/O is
+ * done here, so the caller drives the lines and reads the registers.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class DataRegScan {
+
+    /**
+     * Number of pins.
+     */
+    private final int count;
+    /**
+     * Number of register words.
+     */
+    private final int words;
+    /**
+     * Code seen by each register bit.
+     */
+    private final int[] codes;
+
+    /**
+     * Create scan.
+     *
+     * @param count Number of pins (1 to 64).
+     * @param words Number of 32 bit registers compared.
+     */
+    public DataRegScan(final int count, final int words) {
+        if (count < 1 || count > Long.SIZE) {
+            throw new IllegalArgumentException(String.format("Pin count %d must be 1 to %d", count, Long.SIZE));
+        }
+        this.count = count;
+        this.words = words;
+        codes = new int[words * Integer.SIZE];
+    }
+
+    /**
+     * Return number of passes, the bits needed for codes 1 to count.
+     *
+     * @return Passes.
+     */
+    public int passes() {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(count);
+    }
+
+    /**
+     * Return line values to drive for pass.
+     *
+     * @param pass Pass.
+     * @return Line values, bit i is pin i.
+     */
+    public long values(final int pass) {
+        var values = 0L;
+        for (int i = 0; i < count; i++) {
+            if (((i + 1) >> pass & 1) != 0) {
+                values |= 1L << i;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Record register bits that changed from baseline during pass.
+     *
+     * @param pass Pass.
+     * @param base Baseline register values with all lines low.
+     * @param values Register values with pass lines driven high.
+     */
+    public void record(final int pass, final int[] base, final int[] values) {
+        for (int word = 0; word < words; word++) {
+            var changed = values[word] ^ base[word];
+            while (changed != 0) {
+                codes[word * Integer.SIZE + Integer.numberOfTrailingZeros(changed)] |= 1 << pass;
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    /**
+     * Return bits of register word owned by each pin.
+     *
+     * @param word Register word.
+     * @return Mask per pin, 0 if pin has no bit in word.
+     */
+    public int[] masks(final int word) {
+        final var masks = new int[count];
+        for (int bit = 0; bit < Integer.SIZE; bit++) {
+            final var code = codes[word * Integer.SIZE + bit];
+            if (code > 0 && code <= count) {
+                masks[code - 1] |= 1 << bit;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Return bits of register word that changed with a code no pin has, such as a counter or a bit that follows every line.
+     *
+     * @param word Register word.
+     * @return Bit mask.
+     */
+    public int unknown(final int word) {
+        var mask = 0;
+        for (int bit = 0; bit < Integer.SIZE; bit++) {
+            if (codes[word * Integer.SIZE + bit] > count) {
+                mask |= 1 << bit;
+            }
+        }
+        return mask;
+    }
+}
@@ -224,7 +224,10 @@ public class File {
             writer.write(String.format(
                     "#\n# Generated by %s on %s\n#\n# Format: pin.chip.number = group name, pin name, data in on name, "
                     + "data in on offset, data in on mask, data in off name, data in off offset, data in off mask, data out on name, "
-                    + "data out on offset, data out on mask, data out off name, data out off offset, data out off mask\n#\n\n",
+                    + "data out on offset, data out on mask, data out off name, data out off offset, data out off mask, "
+                    + "dir in name, dir in offset, dir in bits, dir out name, dir out offset, dir out bits, bias disable name, "
+                    + "bias disable offset, bias disable bits, bias up name, bias up offset, bias up bits, bias down name, "
+                    + "bias down offset, bias down bits\n#\n\n",
                     this.getClass().getCanonicalName(), DateTimeFormatter.ISO_INSTANT.format(Instant.now())));
             // Write individual properties from input file
             writer.write(String.format("description = %s\nchips = %s\nchip.size = %s\ngpio.dev = %s\nmem.path = %s\n", properties.
@@ -237,12 +240,10 @@ public class File {
                 // Make sure detect worked by making sure there's a group name
                 if (value.groupName() != null) {
                     writer.write(String.format(
-                            "pin.%d.%d = %s, %s, %s, 0x%02x, 0x%08x, %s, 0x%02x, 0x%08x, %s, 0x%02x, 0x%08x, %s, 0x%02x, 0x%08x\n",
-                            key.chip(), key.pin(), value.groupName(), value.name(),
-                            value.dataInOn().name(), value.dataInOn().offset(), value.dataInOn().mask(), value.
-                            dataInOff().name(), value.dataInOff().offset(), value.dataInOff().mask(), value.
-                            dataOutOn().name(), value.dataOutOn().offset(), value.dataOutOn().mask(), value.
-                            dataOutOff().name(), value.dataOutOff().offset(), value.dataOutOff().mask()));
+                            "pin.%d.%d = %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s\n", key.chip(), key.pin(), value.groupName(),
+                            value.name(), regToStr(value.dataInOn()), regToStr(value.dataInOff()), regToStr(value.dataOutOn()),
+                            regToStr(value.dataOutOff()), regToStr(value.dirIn()), regToStr(value.dirOut()), regToStr(value.
+                            biasDisable()), regToStr(value.biasUp()), regToStr(value.biasDown())));
                 } else {
                     log.warn(String.format("Chip %d pin %d detection failed, so skipping", key.chip(), key.pin()));
                 }
@@ -252,6 +253,37 @@ public class File {
         }
     }
 
+    /**
+     * Convert register to name, offset and mask string.
+     *
+     * @param register Register or null.
+     * @return Comma delimited string with "null" fields for null register.
+     */
+    public String regToStr(final Register register) {
+        String s;
+        if (register != null) {
+            s = String.format("%s, 0x%02x, 0x%08x", register.name(), register.offset(), register.mask());
+        } else {
+            s = "null, null, null";
+        }
+        return s;
+    }
+
+    /**
+     * Convert name, offset and mask fields to register.
+     *
+     * @param value Pin property fields.
+     * @param index Index of name field.
+     * @return Register or null if fields missing or "null".
+     */
+    public Register strToReg(final String[] value, final int index) {
+        Register register = null;
+        if (value.length > index + 2 && strToStr(value[index]) != null) {
+            register = new Register(strToStr(value[index]), hexToInt(value[index + 1]), hexToInt(value[index + 2]));
+        }
+        return register;
+    }
+
     /**
      * Convert hex string to int.
      *
@@ -306,6 +338,9 @@ public class File {
                 final var dataOutOn = new Register(strToStr(value[8]), hexToInt(value[9]), hexToInt(value[10]));
                 final var dataOutOff = new Register(strToStr(value[11]), hexToInt(value[12]), hexToInt(value[13]));
                 final var pin = new Pin(pinKey, strToStr(value[0]), strToStr(value[1]), dataInOn, dataInOff, dataOutOn, dataOutOff);
+                // Direction and bias registers are optional, so older pin maps still load
+                pin.dirIn(strToReg(value, 14)).dirOut(strToReg(value, 17)).biasDisable(strToReg(value, 20)).biasUp(strToReg(value,
+                        23)).biasDown(strToReg(value, 26));
                 pinMap.put(pinKey, pin);
             }
         });
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.util.List;
+
+/**
+ * Logic analyzer style capture of MMIO pins. All pins must share the same data in register, which is sampled in a tight native
+ * loop, so one JNI call returns thousands of samples at MHz-class rates. Bit n of each sample is pin n of the pin list.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioCapture {
+
+    /**
+     * MMIO handle.
+     */
+    private final long handle;
+    /**
+     * Data in register offset.
+     */
+    private final int offset;
+    /**
+     * Data in mask of each pin.
+     */
+    private final int[] masks;
+    /**
+     * Capture time of last sample call.
+     */
+    private final long[] elapsed = new long[1];
+
+    /**
+     * Create capture for pins on the same data in register.
+     *
+     * @param handle MMIO handle of pin's chip.
+     * @param pins Pins to sample (1 to 32).
+     */
+    public MmioCapture(final long handle, final List<Pin> pins) {
+        if (pins.isEmpty() || pins.size() > 32) {
+            throw new IllegalArgumentException("Pin count must be 1 to 32");
+        }
+        this.handle = handle;
+        offset = pins.getFirst().dataInOn().offset();
+        masks = new int[pins.size()];
+        for (int i = 0; i < masks.length; i++) {
+            final var pin = pins.get(i);
+            if (pin.dataInOn().offset() != offset) {
+                throw new IllegalArgumentException(String.format("Pin %s data in offset 0x%08x does not match 0x%08x", pin.name(),
+                        pin.dataInOn().offset(), offset));
+            }
+            masks[i] = pin.dataInOn().mask();
+        }
+    }
+
+    /**
+     * Create capture using MMIO handle of pins.
+     *
+     * @param pins Pins to sample (1 to 32) with MMIO handle set.
+     */
+    public MmioCapture(final List<Pin> pins) {
+        this(pins.getFirst().mmioHadle(), pins);
+    }
+
+    /**
+     * Sample pins into caller's buffer.
+     *
+     * @param samples Packed samples, bit n is pin n.
+     * @param count Number of samples.
+     * @param intervalNs Sample interval in nanoseconds or 0 for as fast as possible.
+     * @return Capture time in nanoseconds.
+     */
+    public long sample(final int[] samples, final int count, final long intervalNs) {
+        if (count > samples.length) {
+            throw new IllegalArgumentException(String.format("Count %d larger than buffer %d", count, samples.length));
+        }
+        final var rc = Mmio.mmioCapture(handle, offset, masks, masks.length, samples, count, intervalNs, elapsed);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Capture failed: errno %d", -rc));
+        }
+        return elapsed[0];
+    }
+
+    /**
+     * Sample pins with one call.
+     *
+     * @param pins Pins to sample (1 to 32) with MMIO handle set.
+     * @param count Number of samples.
+     * @param intervalNs Sample interval in nanoseconds or 0 for as fast as possible.
+     * @return Packed samples, bit n is pin n.
+     */
+    public static int[] sample(final List<Pin> pins, final int count, final long intervalNs) {
+        final var samples = new int[count];
+        new MmioCapture(pins).sample(samples, count, intervalNs);
+        return samples;
+    }
+}
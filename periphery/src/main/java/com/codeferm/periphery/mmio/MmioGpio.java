@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Gpio;
+import com.codeferm.periphery.Mmio;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MMIO based GPIO driver using a generated pin map file (see Gen in tools module). Each chip is mapped once and shared by all
+ * lines. Lines are still opened with GPIO device, so direction, bias, etc. are configured by the kernel, but data reads and writes
+ * go directly to the data registers. Lines not found in the pin map fall back to GPIO device reads and writes. If the pin map has
+ * direction and bias registers (see Gen) those can be switched with MMIO too, which bidirectional bit-banged lines need.
+ *
+ * Writes are thread safe. Boards that share one data register for many pins need read, modify, write, so lines lock a stripe per
+ * (chip, register offset). Threads driving pins on different registers never contend and boards with separate set and clear
+ * registers (Raspberry Pi) do not lock at all.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Slf4j
+public class MmioGpio implements AutoCloseable {
+
+    /**
+     * Pin map from property file or null if using pin table.
+     */
+    private final Map<PinKey, Pin> pinMap;
+    /**
+     * Binary pin table or null if using pin map.
+     */
+    private final PinTable table;
+    /**
+     * Open MMIO for each chip.
+     */
+    private final List<Mmio> mmioList = new ArrayList<>();
+    /**
+     * Registers based on GPIO dev key.
+     */
+    private final Map<Integer, MmioRegisters> registers = new HashMap<>();
+    /**
+     * Read, modify, write locks based on chip and register offset.
+     */
+    private final Map<Long, ReentrantLock> locks = new ConcurrentHashMap<>();
+    /**
+     * Open lines, closed before chips are unmapped.
+     */
+    private final Set<Line> lines = ConcurrentHashMap.newKeySet();
+    /**
+     * Chips unmapped.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Load pin map and map each chip.
+     *
+     * @param mapFileName Pin map property file name (e.g. duo-map.properties) or binary pin table ending in .bin.
+     */
+    public MmioGpio(final String mapFileName) {
+        if (mapFileName.endsWith(".bin")) {
+            table = PinTable.load(Path.of(mapFileName));
+            pinMap = null;
+            for (int i = 0; i < table.chipCount(); i++) {
+                mapChip(table.gpioDev(i), table.chipBase(i), table.chipSize(i), table.memPath());
+            }
+        } else {
+            final var file = new File();
+            table = null;
+            pinMap = file.loadPinMap(mapFileName);
+            for (int i = 0; i < file.chips().size(); i++) {
+                mapChip(file.gpioDev().get(i), file.chips().get(i), file.mmioSize().get(i), file.memPath());
+            }
+        }
+    }
+
+    /**
+     * Open MMIO for chip. Chips that cannot be mapped use GPIO device.
+     *
+     * @param gpioDev GPIO device number.
+     * @param base Chip base address.
+     * @param size Chip size.
+     * @param memPath MMIO path.
+     */
+    private void mapChip(final int gpioDev, final long base, final long size, final String memPath) {
+        try {
+            final var mmio = new Mmio(base, size, memPath);
+            mmioList.add(mmio);
+            registers.put(gpioDev, new MmioRegisters(mmio));
+        } catch (RuntimeException e) {
+            log.warn(String.format("Chip 0x%08x MMIO not available, using GPIO device: %s", base, e.getMessage()));
+        }
+    }
+
+    /**
+     * Open line with direction.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @param direction One of the direction values.
+     * @return Open line.
+     */
+    public Line open(final int chip, final int line, final int direction) {
+        checkOpen();
+        return newLine(new Gpio(String.format("/dev/gpiochip%d", chip), line, direction), chip, line);
+    }
+
+    /**
+     * Open line with configuration.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @param config Configuration struct.
+     * @return Open line.
+     */
+    public Line open(final int chip, final int line, final Gpio.GpioConfig config) {
+        checkOpen();
+        return newLine(new Gpio(String.format("/dev/gpiochip%d", chip), line, config), chip, line);
+    }
+
+    /**
+     * Is line mapped to MMIO registers?
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @return True if reads and writes use MMIO.
+     */
+    public boolean isMapped(final int chip, final int line) {
+        if (!registers.containsKey(chip)) {
+            return false;
+        }
+        if (table != null) {
+            final var record = table.find(chip, line);
+            return record >= 0 && table.offset(record, PinTable.DATA_OUT_ON) >= 0;
+        }
+        final var pin = pinMap.get(new PinKey(chip, line));
+        return pin != null && pin.dataOutOn() != null;
+    }
+
+    /**
+     * Return pin of mapped line. Pin table records are only converted for lines that are opened.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @return Pin.
+     */
+    private Pin getPin(final int chip, final int line) {
+        return table != null ? table.toPin(table.find(chip, line)) : pinMap.get(new PinKey(chip, line));
+    }
+
+    /**
+     * Create line using MMIO if mapped.
+     *
+     * @param gpio Open GPIO.
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @return Open line.
+     */
+    private Line newLine(final Gpio gpio, final int chip, final int line) {
+        final Line newLine;
+        if (isMapped(chip, line)) {
+            final var pin = getPin(chip, line);
+            var dirMask = 0;
+            if (pin.dirIn() != null && pin.dirOut() != null) {
+                final var changed = pin.dirIn().mask() ^ pin.dirOut().mask();
+                dirMask = fieldMask(changed, dirFieldWidth(chip, line, pin.dirIn().offset(), Integer.numberOfTrailingZeros(
+                        changed)));
+            }
+            newLine = new Line(gpio, pin, dirMask, registers.get(chip), offset -> getLock(chip, offset), lines);
+        } else {
+            log.atDebug().log("Chip {} line {} not in pin map, using GPIO device", chip, line);
+            newLine = new Line(gpio, null, 0, null, null, lines);
+        }
+        lines.add(newLine);
+        return newLine;
+    }
+
+    /**
+     * Derive direction field width from the nearest other line using the same direction register. Gen only records the bits that
+     * changed between input and output, but a mux field (3 bits on Raspberry Pi, 4 on Allwinner) must be written whole or other
+     * functions leak through. Fields are packed at a fixed width, so width is bit distance over line distance.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @param offset Direction register offset.
+     * @param bit Lowest changed direction bit.
+     * @return Field width or 0 if no other line shares the register.
+     */
+    private int dirFieldWidth(final int chip, final int line, final int offset, final int bit) {
+        var lineDelta = Integer.MAX_VALUE;
+        var width = 0;
+        if (table != null) {
+            for (int i = 0; i < table.size(); i++) {
+                if (table.chip(i) == chip && table.line(i) != line && table.offset(i, PinTable.DIR_IN) == offset && table.
+                        offset(i, PinTable.DIR_OUT) >= 0) {
+                    final var delta = Math.abs(table.line(i) - line);
+                    final var other = Integer.numberOfTrailingZeros(table.mask(i, PinTable.DIR_IN) ^ table.mask(i,
+                            PinTable.DIR_OUT));
+                    if (delta < lineDelta && Math.abs(other - bit) % delta == 0) {
+                        lineDelta = delta;
+                        width = Math.abs(other - bit) / delta;
+                    }
+                }
+            }
+        } else {
+            for (final var pin : pinMap.values()) {
+                if (pin.key().chip() == chip && pin.key().pin() != line && pin.dirIn() != null && pin.dirOut() != null && pin.
+                        dirIn().offset() == offset) {
+                    final var delta = Math.abs(pin.key().pin() - line);
+                    final var other = Integer.numberOfTrailingZeros(pin.dirIn().mask() ^ pin.dirOut().mask());
+                    if (delta < lineDelta && Math.abs(other - bit) % delta == 0) {
+                        lineDelta = delta;
+                        width = Math.abs(other - bit) / delta;
+                    }
+                }
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Return mask of the fixed width register field holding the changed bits. Fields start at bit 0 and are width bits apart, so
+     * bits of a field above the changed bits are cleared when the field is written.
+     *
+     * @param changed Bits that differ between field values.
+     * @param width Field width or 0 if unknown.
+     * @return Field mask or changed if width is unknown or too small to hold changed.
+     */
+    public static int fieldMask(final int changed, final int width) {
+        if (changed == 0 || width <= 0 || width >= Integer.SIZE) {
+            return changed;
+        }
+        final var start = Integer.numberOfTrailingZeros(changed) / width * width;
+        final var mask = (int) (((1L << width) - 1) << start);
+        return (changed & ~mask) == 0 ? mask : changed;
+    }
+
+    /**
+     * Get lock shared by all lines writing chip register.
+     *
+     * @param chip GPIO chip number.
+     * @param offset Register offset.
+     * @return Lock.
+     */
+    private ReentrantLock getLock(final int chip, final int offset) {
+        return locks.computeIfAbsent(((long) chip << 32) | (offset & 0xffffffffL), k -> new ReentrantLock());
+    }
+
+    /**
+     * Throw if chips are unmapped.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("MMIO GPIO closed");
+        }
+    }
+
+    /**
+     * Close open lines and unmap all chips. Lines used after close throw IllegalStateException instead of touching unmapped
+     * memory, so stop threads driving lines first. Later calls do nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List.copyOf(lines).forEach(Line::close);
+        mmioList.forEach(Mmio::close);
+        mmioList.clear();
+        registers.clear();
+    }
+
+    /**
+     * GPIO line with precomputed register offsets and masks. Reads and writes do not allocate. MMIO writes are thread safe, GPIO
+     * device fallback is not. Closing the line or its MmioGpio makes later calls throw IllegalStateException.
+     */
+    public static class Line implements AutoCloseable {
+
+        /**
+         * GPIO device line.
+         */
+        private final Gpio gpio;
+        /**
+         * GPIO handle.
+         */
+        private final long handle;
+        /**
+         * Chip registers or null for GPIO device.
+         */
+        private final MmioRegisters regs;
+        /**
+         * Data in offset.
+         */
+        private final int inOffset;
+        /**
+         * Data in mask.
+         */
+        private final int inMask;
+        /**
+         * Data out on offset.
+         */
+        private final int onOffset;
+        /**
+         * Data out on mask.
+         */
+        private final int onMask;
+        /**
+         * Data out off offset.
+         */
+        private final int offOffset;
+        /**
+         * Data out off mask (AND mask if same register as on).
+         */
+        private final int offMask;
+        /**
+         * Separate set and clear registers like Raspberry Pi.
+         */
+        private final boolean separate;
+        /**
+         * Register lock if read, modify, write is needed or null.
+         */
+        private final ReentrantLock lock;
+        /**
+         * Direction register offset or -1 if not mapped.
+         */
+        private final int dirOffset;
+        /**
+         * Direction field mask.
+         */
+        private final int dirMask;
+        /**
+         * Direction input bits.
+         */
+        private final int dirInBits;
+        /**
+         * Direction output bits.
+         */
+        private final int dirOutBits;
+        /**
+         * Direction register lock.
+         */
+        private final ReentrantLock dirLock;
+        /**
+         * Bias register offset or -1 if not mapped.
+         */
+        private final int biasOffset;
+        /**
+         * Bias field mask.
+         */
+        private final int biasMask;
+        /**
+         * Bias disabled, pull up and pull down bits.
+         */
+        private final int biasDisableBits;
+        private final int biasUpBits;
+        private final int biasDownBits;
+        /**
+         * Bias register lock.
+         */
+        private final ReentrantLock biasLock;
+        /**
+         * GPIO device read value.
+         */
+        private final boolean[] value = new boolean[1];
+        /**
+         * Open lines of MmioGpio.
+         */
+        private final Set<Line> lines;
+        /**
+         * Line closed.
+         */
+        private volatile boolean closed;
+
+        /**
+         * Create line.
+         *
+         * @param gpio Open GPIO.
+         * @param pin Mapped pin or null.
+         * @param dirMask Direction field mask.
+         * @param regs Chip registers or null.
+         * @param locks Register lock based on offset or null.
+         * @param lines Open lines of MmioGpio.
+         */
+        Line(final Gpio gpio, final Pin pin, final int dirMask, final MmioRegisters regs,
+                final IntFunction<ReentrantLock> locks, final Set<Line> lines) {
+            this.gpio = gpio;
+            this.lines = lines;
+            this.handle = gpio.getHandle();
+            this.regs = regs;
+            if (regs != null) {
+                inOffset = pin.dataInOn().offset();
+                inMask = pin.dataInOn().mask();
+                onOffset = pin.dataOutOn().offset();
+                onMask = pin.dataOutOn().mask();
+                offOffset = pin.dataOutOff().offset();
+                offMask = pin.dataOutOff().mask();
+                separate = onOffset != offOffset;
+                // Separate set and clear registers do not need read, modify, write
+                lock = separate ? null : locks.apply(onOffset);
+                if (pin.dirIn() != null && pin.dirOut() != null) {
+                    dirOffset = pin.dirIn().offset();
+                    dirInBits = pin.dirIn().mask();
+                    dirOutBits = pin.dirOut().mask();
+                    this.dirMask = dirMask;
+                    dirLock = locks.apply(dirOffset);
+                } else {
+                    dirOffset = -1;
+                    dirInBits = 0;
+                    dirOutBits = 0;
+                    this.dirMask = 0;
+                    dirLock = null;
+                }
+                if (pin.biasDisable() != null && pin.biasUp() != null && pin.biasDown() != null) {
+                    biasOffset = pin.biasDisable().offset();
+                    biasDisableBits = pin.biasDisable().mask();
+                    biasUpBits = pin.biasUp().mask();
+                    biasDownBits = pin.biasDown().mask();
+                    biasMask = (biasDisableBits ^ biasUpBits) | (biasUpBits ^ biasDownBits) | (biasDisableBits ^ biasDownBits);
+                    biasLock = locks.apply(biasOffset);
+                } else {
+                    biasOffset = -1;
+                    biasDisableBits = 0;
+                    biasUpBits = 0;
+                    biasDownBits = 0;
+                    biasMask = 0;
+                    biasLock = null;
+                }
+            } else {
+                inOffset = 0;
+                inMask = 0;
+                onOffset = 0;
+                onMask = 0;
+                offOffset = 0;
+                offMask = 0;
+                separate = false;
+                lock = null;
+                dirOffset = -1;
+                dirInBits = 0;
+                dirOutBits = 0;
+                this.dirMask = 0;
+                dirLock = null;
+                biasOffset = -1;
+                biasDisableBits = 0;
+                biasUpBits = 0;
+                biasDownBits = 0;
+                biasMask = 0;
+                biasLock = null;
+            }
+        }
+
+        /**
+         * Read line value.
+         *
+         * @return True = on, false = off.
+         */
+        public boolean read() {
+            checkOpen();
+            if (regs != null) {
+                return (regs.read32(inOffset) & inMask) != 0;
+            }
+            if (Gpio.gpioRead(handle, value) != Gpio.GPIO_SUCCESS) {
+                throw new RuntimeException(Gpio.gpioErrMessage(handle));
+            }
+            return value[0];
+        }
+
+        /**
+         * Write line value.
+         *
+         * @param on True = on, false = off.
+         */
+        public void write(final boolean on) {
+            checkOpen();
+            if (regs == null) {
+                if (Gpio.gpioWrite(handle, on) != Gpio.GPIO_SUCCESS) {
+                    throw new RuntimeException(Gpio.gpioErrMessage(handle));
+                }
+            } else if (separate) {
+                // Set and clear registers only change bits written as 1
+                if (on) {
+                    regs.write32(onOffset, onMask);
+                } else {
+                    regs.write32(offOffset, offMask);
+                }
+            } else {
+                lock.lock();
+                try {
+                    if (on) {
+                        regs.write32(onOffset, regs.read32(onOffset) | onMask);
+                    } else {
+                        regs.write32(offOffset, regs.read32(offOffset) & offMask);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Toggle line value.
+         */
+        public void toggle() {
+            checkOpen();
+            if (regs != null && !separate) {
+                lock.lock();
+                try {
+                    regs.write32(onOffset, regs.read32(onOffset) ^ onMask);
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                write(!read());
+            }
+        }
+
+        /**
+         * Set direction. Uses the mode register if mapped, which is nanoseconds instead of a GPIO device reconfigure. The GPIO
+         * device still reports the direction it was opened with.
+         *
+         * @param direction GPIO_DIR_IN or one of the output directions.
+         */
+        public void setDirection(final int direction) {
+            checkOpen();
+            if (dirOffset < 0) {
+                if (Gpio.gpioSetDirection(handle, direction) != Gpio.GPIO_SUCCESS) {
+                    throw new RuntimeException(Gpio.gpioErrMessage(handle));
+                }
+            } else {
+                if (direction == Gpio.GPIO_DIR_OUT_HIGH) {
+                    write(true);
+                } else if (direction == Gpio.GPIO_DIR_OUT_LOW) {
+                    write(false);
+                }
+                dirLock.lock();
+                try {
+                    regs.writeField(dirOffset, dirMask, direction == Gpio.GPIO_DIR_IN ? dirInBits : dirOutBits);
+                } finally {
+                    dirLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Set bias. Uses the pull register if mapped.
+         *
+         * @param bias GPIO_BIAS_DISABLE, GPIO_BIAS_PULL_UP or GPIO_BIAS_PULL_DOWN.
+         * @throws IllegalArgumentException If pull register is mapped and bias is another value.
+         */
+        public void setBias(final int bias) {
+            checkOpen();
+            if (biasOffset < 0) {
+                if (Gpio.gpioSetBias(handle, bias) != Gpio.GPIO_SUCCESS) {
+                    throw new RuntimeException(Gpio.gpioErrMessage(handle));
+                }
+            } else {
+                final int bits;
+                if (bias == Gpio.GPIO_BIAS_PULL_UP) {
+                    bits = biasUpBits;
+                } else if (bias == Gpio.GPIO_BIAS_PULL_DOWN) {
+                    bits = biasDownBits;
+                } else if (bias == Gpio.GPIO_BIAS_DISABLE) {
+                    bits = biasDisableBits;
+                } else {
+                    throw new IllegalArgumentException(String.format("Bias %d cannot be set with pull register", bias));
+                }
+                biasLock.lock();
+                try {
+                    regs.writeField(biasOffset, biasMask, bits);
+                } finally {
+                    biasLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Is direction switched using MMIO?
+         *
+         * @return True if mode register is mapped.
+         */
+        public boolean isMmioDirection() {
+            return dirOffset >= 0;
+        }
+
+        /**
+         * Is line using MMIO?
+         *
+         * @return True if reads and writes use MMIO.
+         */
+        public boolean isMmio() {
+            return regs != null;
+        }
+
+        /**
+         * Return GPIO device line used for configuration.
+         *
+         * @return GPIO.
+         */
+        public Gpio getGpio() {
+            return gpio;
+        }
+
+        /**
+         * Throw if line is closed.
+         */
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Line closed");
+            }
+        }
+
+        /**
+         * Close GPIO device line. Later calls do nothing.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lines.remove(this);
+            gpio.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 32 bit register access over a direct ByteBuffer view of mapped memory. Accesses use volatile semantics, so repeated writes to
+ * the same register (pin on, pin off) are never merged or removed by the JIT and no JNI call is made per access.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioRegisters {
+
+    /**
+     * Native order int view of ByteBuffer.
+     */
+    private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    /**
+     * Mapped memory.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Create registers from open MMIO.
+     *
+     * @param mmio Open MMIO.
+     */
+    public MmioRegisters(final Mmio mmio) {
+        this(mmio.asByteBuffer());
+    }
+
+    /**
+     * Create registers from direct ByteBuffer.
+     *
+     * @param buffer Direct ByteBuffer over mapped memory.
+     */
+    public MmioRegisters(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Read 32 bit register.
+     *
+     * @param offset Byte offset from base address.
+     * @return Register value.
+     */
+    public int read32(final int offset) {
+        return (int) INT_HANDLE.getVolatile(buffer, offset);
+    }
+
+    /**
+     * Write 32 bit register.
+     *
+     * @param offset Byte offset from base address.
+     * @param value Register value.
+     */
+    public void write32(final int offset, final int value) {
+        INT_HANDLE.setVolatile(buffer, offset, value);
+    }
+
+    /**
+     * Set bits in register using read, modify, write.
+     *
+     * @param offset Byte offset from base address.
+     * @param mask Bits to set.
+     */
+    public void setBits(final int offset, final int mask) {
+        write32(offset, read32(offset) | mask);
+    }
+
+    /**
+     * Clear bits in register using read, modify, write.
+     *
+     * @param offset Byte offset from base address.
+     * @param mask Bits to clear.
+     */
+    public void clearBits(final int offset, final int mask) {
+        write32(offset, read32(offset) & ~mask);
+    }
+
+    /**
+     * Replace bit field in register using read, modify, write.
+     *
+     * @param offset Byte offset from base address.
+     * @param mask Field bits.
+     * @param bits New field value (only bits in mask are used).
+     */
+    public void writeField(final int offset, final int mask, final int bits) {
+        write32(offset, (read32(offset) & ~mask) | (bits & mask));
+    }
+
+    /**
+     * Return size of mapped memory.
+     *
+     * @return Size in bytes.
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+}
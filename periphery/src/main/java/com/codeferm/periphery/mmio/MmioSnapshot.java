@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.util.Arrays;
+
+/**
+ * Snapshot of a block of 32 bit registers read with one JNI call into a reusable int array. Diffs compare primitive values, so
+ * scanning a register window does not box or allocate.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioSnapshot {
+
+    /**
+     * MMIO handle.
+     */
+    private final long handle;
+    /**
+     * Starting offset.
+     */
+    private final int offset;
+    /**
+     * Register values.
+     */
+    private final int[] values;
+
+    /**
+     * Create snapshot of count registers starting at offset. Call read to take snapshot.
+     *
+     * @param handle MMIO handle.
+     * @param offset Starting offset (32 bit aligned).
+     * @param count Number of registers.
+     */
+    public MmioSnapshot(final long handle, final int offset, final int count) {
+        this.handle = handle;
+        this.offset = offset;
+        values = new int[count];
+    }
+
+    /**
+     * Read all registers.
+     *
+     * @return This snapshot.
+     */
+    public MmioSnapshot read() {
+        final var rc = Mmio.mmioRead32Block(handle, offset, values, values.length);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Block read at offset 0x%08x failed: errno %d", offset, -rc));
+        }
+        return this;
+    }
+
+    /**
+     * Return register values.
+     *
+     * @return Values indexed by word.
+     */
+    public int[] values() {
+        return values;
+    }
+
+    /**
+     * Return register value.
+     *
+     * @param index Word index.
+     * @return Value.
+     */
+    public int value(final int index) {
+        return values[index];
+    }
+
+    /**
+     * Return offset of word.
+     *
+     * @param index Word index.
+     * @return Register offset.
+     */
+    public int offset(final int index) {
+        return offset + index * 4;
+    }
+
+    /**
+     * Return number of registers.
+     *
+     * @return Count.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Return index of next word that differs from other snapshot.
+     *
+     * @param other Snapshot of same block.
+     * @param from Index to start at.
+     * @return Index of difference or -1 if none.
+     */
+    public int nextDiff(final MmioSnapshot other, final int from) {
+        return nextDiff(values, other.values, from);
+    }
+
+    /**
+     * Return index of next word that differs.
+     *
+     * @param values1 First values.
+     * @param values2 Second values.
+     * @param from Index to start at.
+     * @return Index of difference or -1 if none.
+     */
+    public static int nextDiff(final int[] values1, final int[] values2, final int from) {
+        final var i = Arrays.mismatch(values1, from, values1.length, values2, from, values2.length);
+        return i < 0 ? -1 : from + i;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Register watch trace. Native code samples a register window at a fixed rate and writes only changed words with timestamps to a
+ * memory mapped file, so watching does not cross JNI per sample or allocate. The trace can be replayed to rebuild the register
+ * window at any point in time or summarized per register.
+ *
+ * Layout (native byte order): 64 byte header (magic, version, words, base address, offset, record size, interval, record count,
+ * sample count and elapsed time) followed by 16 byte records (timestamp relative to start, register offset and value). The first
+ * words records hold the initial values at time 0.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioTrace {
+
+    /**
+     * File magic.
+     */
+    private static final byte[] MAGIC = "JUIOTRCE".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Format version.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Header size.
+     */
+    private static final int HEADER_SIZE = 64;
+    /**
+     * Record size.
+     */
+    private static final int RECORD_SIZE = 16;
+    /**
+     * Mapped file.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Number of records.
+     */
+    private final int recordCount;
+
+    /**
+     * Create trace over mapped buffer.
+     *
+     * @param buffer Mapped file.
+     */
+    private MmioTrace(final ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        final var magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(MAGIC, magic) || buffer.getInt(8) != VERSION || buffer.getInt(28) != RECORD_SIZE) {
+            throw new RuntimeException("Not a version 1 trace");
+        }
+        recordCount = (int) buffer.getLong(40);
+    }
+
+    /**
+     * Watch register window and write trace file. Blocks for durationNs or until maxRecords changes are recorded.
+     *
+     * @param handle MMIO handle.
+     * @param offset Starting offset (32 bit aligned).
+     * @param words Number of registers.
+     * @param intervalNs Sample interval in nanoseconds, 0 for as fast as possible.
+     * @param durationNs Watch time in nanoseconds.
+     * @param path Trace file.
+     * @param maxRecords Maximum records including initial values.
+     * @return Trace.
+     */
+    public static MmioTrace record(final long handle, final int offset, final int words, final long intervalNs,
+            final long durationNs, final Path path, final int maxRecords) {
+        final var rc = Mmio.mmioWatch(handle, offset, words, intervalNs, durationNs, path.toString(), maxRecords);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Watch at offset 0x%08x failed: errno %d", offset, -rc));
+        }
+        return open(path);
+    }
+
+    /**
+     * Memory map trace file.
+     *
+     * @param path Trace file.
+     * @return Trace.
+     */
+    public static MmioTrace open(final Path path) {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MmioTrace(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return number of registers watched.
+     *
+     * @return Word count.
+     */
+    public int words() {
+        return buffer.getInt(12);
+    }
+
+    /**
+     * Return base address of MMIO mapping.
+     *
+     * @return Base address.
+     */
+    public long base() {
+        return buffer.getLong(16);
+    }
+
+    /**
+     * Return starting offset of window.
+     *
+     * @return Offset.
+     */
+    public int startOffset() {
+        return buffer.getInt(24);
+    }
+
+    /**
+     * Return sample interval.
+     *
+     * @return Interval in nanoseconds.
+     */
+    public long intervalNs() {
+        return buffer.getLong(32);
+    }
+
+    /**
+     * Return number of records.
+     *
+     * @return Record count.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Return number of samples taken.
+     *
+     * @return Sample count.
+     */
+    public long samples() {
+        return buffer.getLong(48);
+    }
+
+    /**
+     * Return watch time.
+     *
+     * @return Elapsed time in nanoseconds.
+     */
+    public long elapsedNs() {
+        return buffer.getLong(56);
+    }
+
+    /**
+     * Return record timestamp.
+     *
+     * @param record Record number.
+     * @return Nanoseconds since start of watch.
+     */
+    public long timestamp(final int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    /**
+     * Return record register offset.
+     *
+     * @param record Record number.
+     * @return Register offset.
+     */
+    public int offset(final int record) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Return record register value.
+     *
+     * @param record Record number.
+     * @return Value.
+     */
+    public int value(final int record) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + 12);
+    }
+
+    /**
+     * Return word index of record.
+     *
+     * @param record Record number.
+     * @return Word index in window.
+     */
+    public int word(final int record) {
+        return (offset(record) - startOffset()) / 4;
+    }
+
+    /**
+     * Replay trace into register window up to a point in time.
+     *
+     * @param values Register values indexed by word (length at least words).
+     * @param timeNs Nanoseconds since start of watch.
+     * @return Number of records applied.
+     */
+    public int replay(final int[] values, final long timeNs) {
+        var i = 0;
+        while (i < recordCount && timestamp(i) <= timeNs) {
+            values[word(i)] = value(i);
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return number of changes per register excluding initial values.
+     *
+     * @return Change counts indexed by word.
+     */
+    public int[] changes() {
+        final var counts = new int[words()];
+        for (int i = words(); i < recordCount; i++) {
+            counts[word(i)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Return summary of trace with one line per register that changed.
+     *
+     * @return Summary.
+     */
+    public String summary() {
+        final var words = words();
+        final var first = new int[words];
+        final var last = new int[words];
+        replay(first, 0);
+        replay(last, Long.MAX_VALUE);
+        final var counts = changes();
+        final var sb = new StringBuilder(String.format("Base 0x%08x, offset 0x%08x, %d words, %d samples, %d records, %d ns\n",
+                base(), startOffset(), words, samples(), recordCount, elapsedNs()));
+        for (int i = 0; i < words; i++) {
+            if (counts[i] > 0) {
+                sb.append(String.format("Offset 0x%08x: %d changes, first %s, last %s\n", startOffset() + i * 4, counts[i],
+                        String.format("%32s", Integer.toBinaryString(first[i])).replace(' ', '0'), String.format("%32s", Integer.
+                        toBinaryString(last[i])).replace(' ', '0')));
+            }
+        }
+        return sb.toString();
+    }
+}
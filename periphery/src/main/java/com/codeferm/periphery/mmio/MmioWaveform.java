@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import com.codeferm.periphery.Mmio;
+import java.util.Arrays;
+
+/**
+ * Precompiled MMIO waveform. Steps are built from pin map data once, then the whole program is played by a native busy-wait loop
+ * in one JNI call. Timing is against absolute time, so there is no JIT, GC or per edge JNI jitter like a Java write loop. All pins
+ * must be on the chip the MMIO handle maps.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MmioWaveform {
+
+    /**
+     * Write value to register.
+     */
+    public static final int OP_WRITE = 0;
+    /**
+     * OR value into register.
+     */
+    public static final int OP_OR = 1;
+    /**
+     * AND value into register.
+     */
+    public static final int OP_AND = 2;
+    /**
+     * XOR value into register.
+     */
+    public static final int OP_XOR = 3;
+    /**
+     * MMIO handle.
+     */
+    private final long handle;
+    /**
+     * Steps packed as opcode, offset, value, delay.
+     */
+    private int[] program = new int[64];
+    /**
+     * Number of steps.
+     */
+    private int steps;
+    /**
+     * Play time of last play call.
+     */
+    private final long[] elapsed = new long[1];
+
+    /**
+     * Create empty waveform.
+     *
+     * @param handle MMIO handle of chip.
+     */
+    public MmioWaveform(final long handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Add raw step.
+     *
+     * @param op Opcode.
+     * @param offset Register offset.
+     * @param value Register value or mask.
+     * @param delayNs Delay in nanoseconds before next step.
+     * @return This waveform.
+     */
+    public MmioWaveform step(final int op, final int offset, final int value, final int delayNs) {
+        if (delayNs < 0) {
+            throw new IllegalArgumentException("Delay must be >= 0");
+        }
+        if ((steps + 1) * 4 > program.length) {
+            program = Arrays.copyOf(program, program.length * 2);
+        }
+        final var i = steps * 4;
+        program[i] = op;
+        program[i + 1] = offset;
+        program[i + 2] = value;
+        program[i + 3] = delayNs;
+        steps++;
+        return this;
+    }
+
+    /**
+     * Add pin on step. Separate set and clear registers are written directly, otherwise the on mask is ORed.
+     *
+     * @param pin Mapped pin.
+     * @param delayNs Delay in nanoseconds before next step.
+     * @return This waveform.
+     */
+    public MmioWaveform on(final Pin pin, final int delayNs) {
+        final var op = isSeparate(pin) ? OP_WRITE : OP_OR;
+        return step(op, pin.dataOutOn().offset(), pin.dataOutOn().mask(), delayNs);
+    }
+
+    /**
+     * Add pin off step. Separate set and clear registers are written directly, otherwise the off mask is ANDed.
+     *
+     * @param pin Mapped pin.
+     * @param delayNs Delay in nanoseconds before next step.
+     * @return This waveform.
+     */
+    public MmioWaveform off(final Pin pin, final int delayNs) {
+        final var op = isSeparate(pin) ? OP_WRITE : OP_AND;
+        return step(op, pin.dataOutOff().offset(), pin.dataOutOff().mask(), delayNs);
+    }
+
+    /**
+     * Add pulse steps (on for highNs then off for lowNs).
+     *
+     * @param pin Mapped pin.
+     * @param highNs On time in nanoseconds.
+     * @param lowNs Off time in nanoseconds.
+     * @return This waveform.
+     */
+    public MmioWaveform pulse(final Pin pin, final int highNs, final int lowNs) {
+        return on(pin, highNs).off(pin, lowNs);
+    }
+
+    /**
+     * Separate set and clear registers like Raspberry Pi?
+     *
+     * @param pin Mapped pin.
+     * @return True if on and off registers differ.
+     */
+    static boolean isSeparate(final Pin pin) {
+        return !pin.dataOutOn().offset().equals(pin.dataOutOff().offset());
+    }
+
+    /**
+     * Remove all steps.
+     */
+    public void clear() {
+        steps = 0;
+    }
+
+    /**
+     * Return number of steps.
+     *
+     * @return Steps.
+     */
+    public int size() {
+        return steps;
+    }
+
+    /**
+     * Play waveform.
+     *
+     * @param repeat Number of times to play program.
+     * @return Play time in nanoseconds.
+     */
+    public long play(final int repeat) {
+        final var rc = Mmio.mmioWaveform(handle, program, steps, repeat, elapsed);
+        if (rc < 0) {
+            throw new RuntimeException(String.format("Waveform failed: errno %d", -rc));
+        }
+        return elapsed[0];
+    }
+
+    /**
+     * Play waveform once.
+     *
+     * @return Play time in nanoseconds.
+     */
+    public long play() {
+        return play(1);
+    }
+}
@@ -51,6 +51,26 @@ public class Pin {
      * Pin data output off register.
      */
     private Register dataOutOff;
+    /**
+     * Pin direction input bits. Offset is the mode register and mask holds the field bits that differ from output.
+     */
+    private Register dirIn;
+    /**
+     * Pin direction output bits. Field mask is dirIn mask XOR dirOut mask.
+     */
+    private Register dirOut;
+    /**
+     * Pin bias disabled bits.
+     */
+    private Register biasDisable;
+    /**
+     * Pin bias pull up bits.
+     */
+    private Register biasUp;
+    /**
+     * Pin bias pull down bits.
+     */
+    private Register biasDown;
     /**
      * MMIO handle.
      */
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled binary pin map. Gen writes fixed width little endian records sorted by chip and line, so loading is a memory map plus
+ * one pass to build a primitive key index. Lookups are a binary search on a long[] and register fields are read straight from the
+ * mapped buffer, so there is no property parsing or PinKey allocation.
+ *
+ * Layout: 96 byte header (magic, version, chip count, record count, record size, MMIO path), 24 byte chip entries (GPIO device,
+ * base address, size) and 104 byte pin records (chip, line, 9 register offset and mask pairs, group name, pin name). Missing
+ * registers have offset -1.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class PinTable {
+
+    /**
+     * Register indexes in a record.
+     */
+    public static final int DATA_IN_ON = 0;
+    public static final int DATA_IN_OFF = 1;
+    public static final int DATA_OUT_ON = 2;
+    public static final int DATA_OUT_OFF = 3;
+    public static final int DIR_IN = 4;
+    public static final int DIR_OUT = 5;
+    public static final int BIAS_DISABLE = 6;
+    public static final int BIAS_UP = 7;
+    public static final int BIAS_DOWN = 8;
+    /**
+     * Register names used when converting to Pin.
+     */
+    private static final String[] REG_NAMES = {"IN_ON", "IN_OFF", "OUT_ON", "OUT_OFF", "DIR_IN", "DIR_OUT", "BIAS_DISABLE",
+        "BIAS_UP", "BIAS_DOWN"};
+    /**
+     * File magic.
+     */
+    private static final byte[] MAGIC = "JUIOPMAP".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Format version.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Header size.
+     */
+    private static final int HEADER_SIZE = 96;
+    /**
+     * MMIO path field size.
+     */
+    private static final int PATH_SIZE = 64;
+    /**
+     * Chip entry size.
+     */
+    private static final int CHIP_SIZE = 24;
+    /**
+     * Group name field size.
+     */
+    private static final int GROUP_SIZE = 8;
+    /**
+     * Pin name field size.
+     */
+    private static final int NAME_SIZE = 16;
+    /**
+     * Pin record size.
+     */
+    private static final int RECORD_SIZE = 8 + REG_NAMES.length * 8 + GROUP_SIZE + NAME_SIZE;
+    /**
+     * Mapped file.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Number of chips.
+     */
+    private final int chipCount;
+    /**
+     * Number of pin records.
+     */
+    private final int recordCount;
+    /**
+     * Start of records.
+     */
+    private final int recordStart;
+    /**
+     * Sorted keys (chip << 32 | line), index is record number.
+     */
+    private final long[] keys;
+
+    /**
+     * Create table over mapped buffer.
+     *
+     * @param buffer Mapped file.
+     */
+    private PinTable(final ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        final var magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(MAGIC, magic) || buffer.getInt(8) != VERSION || buffer.getInt(20) != RECORD_SIZE) {
+            throw new RuntimeException("Not a version 1 pin table");
+        }
+        chipCount = buffer.getInt(12);
+        recordCount = buffer.getInt(16);
+        recordStart = HEADER_SIZE + chipCount * CHIP_SIZE;
+        keys = new long[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            keys[i] = key(buffer.getInt(recordStart + i * RECORD_SIZE), buffer.getInt(recordStart + i * RECORD_SIZE + 4));
+        }
+    }
+
+    /**
+     * Memory map pin table file.
+     *
+     * @param path Pin table file.
+     * @return Pin table.
+     */
+    public static PinTable load(final Path path) {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PinTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write pin table from pin map. Pins without a detected group are skipped like File.genProperties. Names are never truncated,
+     * so a group name over 8 bytes, pin name over 16 bytes or MMIO path over 64 bytes (UTF-8) is rejected and nothing is written.
+     *
+     * @param pinMap Pin map.
+     * @param file File with chips, chip size, GPIO devices and MMIO path loaded.
+     * @param path Pin table file.
+     * @throws IllegalArgumentException If a name does not fit its field.
+     */
+    public static void write(final Map<PinKey, Pin> pinMap, final File file, final Path path) {
+        // TreeMap keeps records sorted by chip and line
+        final var pins = new TreeMap<PinKey, Pin>(pinMap).values().stream().filter(pin -> pin.groupName() != null).toList();
+        final var chipCount = file.chips().size();
+        final var buf = ByteBuffer.allocate(HEADER_SIZE + chipCount * CHIP_SIZE + pins.size() * RECORD_SIZE).order(
+                ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC).putInt(VERSION).putInt(chipCount).putInt(pins.size()).putInt(RECORD_SIZE);
+        putString(buf, file.memPath(), PATH_SIZE);
+        buf.position(HEADER_SIZE);
+        for (int i = 0; i < chipCount; i++) {
+            buf.putInt(file.gpioDev().get(i)).putInt(0).putLong(file.chips().get(i)).putLong(file.mmioSize().get(i));
+        }
+        for (final var pin : pins) {
+            buf.putInt(pin.key().chip()).putInt(pin.key().pin());
+            for (final var reg : new Register[]{pin.dataInOn(), pin.dataInOff(), pin.dataOutOn(), pin.dataOutOff(), pin.dirIn(),
+                pin.dirOut(), pin.biasDisable(), pin.biasUp(), pin.biasDown()}) {
+                if (reg != null && reg.offset() != null && reg.offset() >= 0) {
+                    buf.putInt(reg.offset()).putInt(reg.mask());
+                } else {
+                    buf.putInt(-1).putInt(0);
+                }
+            }
+            putString(buf, pin.groupName(), GROUP_SIZE);
+            putString(buf, pin.name(), NAME_SIZE);
+        }
+        try {
+            Files.write(path, buf.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Put zero padded fixed width string.
+     *
+     * @param buf Buffer.
+     * @param str String or null.
+     * @param size Field size.
+     * @throws IllegalArgumentException If string does not fit.
+     */
+    private static void putString(final ByteBuffer buf, final String str, final int size) {
+        final var bytes = str == null ? new byte[0] : str.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > size) {
+            throw new IllegalArgumentException(String.format("%s is %d bytes, pin table field holds %d", str, bytes.length,
+                    size));
+        }
+        buf.put(bytes);
+        buf.put(new byte[size - bytes.length]);
+    }
+
+    /**
+     * Get zero padded fixed width string.
+     *
+     * @param pos Field position.
+     * @param size Field size.
+     * @return String.
+     */
+    private String getString(final int pos, final int size) {
+        var len = 0;
+        while (len < size && buffer.get(pos + len) != 0) {
+            len++;
+        }
+        final var bytes = new byte[len];
+        buffer.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return primitive key.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @return Key.
+     */
+    private static long key(final int chip, final int line) {
+        return ((long) chip << 32) | (line & 0xffffffffL);
+    }
+
+    /**
+     * Find record for chip and line.
+     *
+     * @param chip GPIO chip number.
+     * @param line GPIO line number.
+     * @return Record number or -1 if not found.
+     */
+    public int find(final int chip, final int line) {
+        final var i = Arrays.binarySearch(keys, key(chip, line));
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Return register offset.
+     *
+     * @param record Record number.
+     * @param reg Register index (DATA_IN_ON, etc.)
+     * @return Offset or -1 if not mapped.
+     */
+    public int offset(final int record, final int reg) {
+        return buffer.getInt(recordStart + record * RECORD_SIZE + 8 + reg * 8);
+    }
+
+    /**
+     * Return register mask.
+     *
+     * @param record Record number.
+     * @param reg Register index (DATA_IN_ON, etc.)
+     * @return Mask.
+     */
+    public int mask(final int record, final int reg) {
+        return buffer.getInt(recordStart + record * RECORD_SIZE + 12 + reg * 8);
+    }
+
+    /**
+     * Return chip of record.
+     *
+     * @param record Record number.
+     * @return GPIO chip number.
+     */
+    public int chip(final int record) {
+        return (int) (keys[record] >> 32);
+    }
+
+    /**
+     * Return line of record.
+     *
+     * @param record Record number.
+     * @return GPIO line number.
+     */
+    public int line(final int record) {
+        return (int) keys[record];
+    }
+
+    /**
+     * Return number of pin records.
+     *
+     * @return Record count.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Return number of chips.
+     *
+     * @return Chip count.
+     */
+    public int chipCount() {
+        return chipCount;
+    }
+
+    /**
+     * Return GPIO device number of chip.
+     *
+     * @param index Chip index.
+     * @return GPIO device number.
+     */
+    public int gpioDev(final int index) {
+        return buffer.getInt(HEADER_SIZE + index * CHIP_SIZE);
+    }
+
+    /**
+     * Return base address of chip.
+     *
+     * @param index Chip index.
+     * @return Base address.
+     */
+    public long chipBase(final int index) {
+        return buffer.getLong(HEADER_SIZE + index * CHIP_SIZE + 8);
+    }
+
+    /**
+     * Return MMIO size of chip.
+     *
+     * @param index Chip index.
+     * @return Size in bytes.
+     */
+    public long chipSize(final int index) {
+        return buffer.getLong(HEADER_SIZE + index * CHIP_SIZE + 16);
+    }
+
+    /**
+     * Return MMIO path.
+     *
+     * @return Path such as /dev/mem.
+     */
+    public String memPath() {
+        return getString(24, PATH_SIZE);
+    }
+
+    /**
+     * Convert record to Pin.
+     *
+     * @param record Record number.
+     * @return Pin.
+     */
+    public Pin toPin(final int record) {
+        final var pos = recordStart + record * RECORD_SIZE;
+        final var regs = new Register[REG_NAMES.length];
+        for (int i = 0; i < regs.length; i++) {
+            final var offset = offset(record, i);
+            if (offset >= 0) {
+                regs[i] = new Register(REG_NAMES[i], offset, mask(record, i));
+            }
+        }
+        return new Pin(new PinKey(chip(record), line(record)), getString(pos + 8 + REG_NAMES.length * 8, GROUP_SIZE), getString(
+                pos + 8 + REG_NAMES.length * 8 + GROUP_SIZE, NAME_SIZE), regs[DATA_IN_ON], regs[DATA_IN_OFF], regs[DATA_OUT_ON],
+                regs[DATA_OUT_OFF]).dirIn(regs[DIR_IN]).dirOut(regs[DIR_OUT]).biasDisable(regs[BIAS_DISABLE]).biasUp(
+                regs[BIAS_UP]).biasDown(regs[BIAS_DOWN]);
+    }
+
+    /**
+     * Convert all records to pin map for code using File.loadPinMap results.
+     *
+     * @return Pin map.
+     */
+    public Map<PinKey, Pin> toPinMap() {
+        final Map<PinKey, Pin> pinMap = new TreeMap<>();
+        for (int i = 0; i < recordCount; i++) {
+            final var pin = toPin(i);
+            pinMap.put(pin.key(), pin);
+        }
+        return pinMap;
+    }
+}
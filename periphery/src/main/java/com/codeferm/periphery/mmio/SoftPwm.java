@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery.mmio;
+
+import static com.codeferm.periphery.Common.newDirectByteBuffer;
+import com.codeferm.periphery.Mmio;
+import static com.codeferm.periphery.mmio.MmioWaveform.OP_AND;
+import static com.codeferm.periphery.mmio.MmioWaveform.OP_OR;
+import static com.codeferm.periphery.mmio.MmioWaveform.OP_WRITE;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Multi-channel software PWM for pins without hardware PWM. A native thread toggles the data registers of every channel on a fixed
+ * tick and latches duty cycles at the start of each period. Java only stores duty cycles into memory shared with the native
+ * thread, so there is no locking, JNI call or timer per update. All pins must be on the chip the MMIO handle maps.
+ *
+ * The PWM thread writes through the MMIO mapping, so close the SoftPwm before the Mmio that owns the handle. After close the duty
+ * cycle memory is freed and setDuty and getDuty throw IllegalStateException. Do not call close while other threads set duty
+ * cycles.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class SoftPwm implements AutoCloseable {
+
+    /**
+     * Native order int view of duty cycle buffer.
+     */
+    private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    /**
+     * PWM handle.
+     */
+    private long handle;
+    /**
+     * Duty cycles shared with PWM thread, null after close.
+     */
+    private volatile ByteBuffer duty;
+    /**
+     * Number of channels.
+     */
+    private final int channels;
+    /**
+     * Ticks per period.
+     */
+    private final int periodTicks;
+
+    /**
+     * Start PWM thread. Frequency is 1 / (tickNs * periodTicks).
+     *
+     * @param mmioHandle MMIO handle of chip, which must stay open until this is closed.
+     * @param pins Mapped pins, one per channel.
+     * @param tickNs Tick in nanoseconds.
+     * @param periodTicks Ticks per period, which is also the duty cycle resolution.
+     */
+    public SoftPwm(final long mmioHandle, final List<Pin> pins, final int tickNs, final int periodTicks) {
+        channels = pins.size();
+        this.periodTicks = periodTicks;
+        final var program = new int[channels * 6];
+        for (int i = 0; i < channels; i++) {
+            final var pin = pins.get(i);
+            final var separate = MmioWaveform.isSeparate(pin);
+            final var j = i * 6;
+            program[j] = separate ? OP_WRITE : OP_OR;
+            program[j + 1] = pin.dataOutOn().offset();
+            program[j + 2] = pin.dataOutOn().mask();
+            program[j + 3] = separate ? OP_WRITE : OP_AND;
+            program[j + 4] = pin.dataOutOff().offset();
+            program[j + 5] = pin.dataOutOff().mask();
+        }
+        handle = Mmio.mmioPwmStart(mmioHandle, program, channels, tickNs, periodTicks);
+        if (handle == 0) {
+            throw new RuntimeException(String.format("Software PWM start failed for %d channels", channels));
+        }
+        duty = newDirectByteBuffer(Mmio.mmioPwmDuty(handle), (long) channels * Integer.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Set duty cycle in ticks. Takes effect at start of next period.
+     *
+     * @param channel Channel index.
+     * @param ticks 0 (off) to periodTicks (on).
+     */
+    public void setDuty(final int channel, final int ticks) {
+        INT_HANDLE.setRelease(dutyBuffer(channel), channel * Integer.BYTES, Math.clamp(ticks, 0, periodTicks));
+    }
+
+    /**
+     * Set duty cycle as a fraction of period.
+     *
+     * @param channel Channel index.
+     * @param fraction 0.0 (off) to 1.0 (on).
+     */
+    public void setDutyCycle(final int channel, final double fraction) {
+        setDuty(channel, (int) Math.round(fraction * periodTicks));
+    }
+
+    /**
+     * Get duty cycle in ticks.
+     *
+     * @param channel Channel index.
+     * @return Duty cycle in ticks.
+     */
+    public int getDuty(final int channel) {
+        return (int) INT_HANDLE.getAcquire(dutyBuffer(channel), channel * Integer.BYTES);
+    }
+
+    /**
+     * Check channel and return duty cycle buffer.
+     *
+     * @param channel Channel index.
+     * @return Duty cycle buffer.
+     */
+    private ByteBuffer dutyBuffer(final int channel) {
+        if (channel < 0 || channel >= channels) {
+            throw new IndexOutOfBoundsException(String.format("Channel %d out of range", channel));
+        }
+        final var buf = duty;
+        if (buf == null) {
+            throw new IllegalStateException("Software PWM is closed");
+        }
+        return buf;
+    }
+
+    /**
+     * Return ticks per period.
+     *
+     * @return Ticks per period.
+     */
+    public int getPeriodTicks() {
+        return periodTicks;
+    }
+
+    /**
+     * Stop PWM thread and turn all channels off.
+     */
+    @Override
+    public void close() {
+        if (handle != 0) {
+            // Drop view of duty cycles before native stop frees them
+            duty = null;
+            Mmio.mmioPwmStop(handle);
+            handle = 0;
+        }
+    }
+}
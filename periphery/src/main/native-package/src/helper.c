@@ -4,6 +4,23 @@
  * Copyright (c) Steven P. Goldsmith. All rights reserved.
  */
 
+#ifndef _GNU_SOURCE
+#define _GNU_SOURCE
+#endif
+#include <errno.h>
+#include <fcntl.h>
+#include <string.h>
+#include <poll.h>
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <termios.h>
+#include <unistd.h>
+#include <sys/epoll.h>
+#include <sys/mman.h>
+#include <sys/ioctl.h>
+#include <linux/gpio.h>
 #include "helper.h"
 
 /*
@@ -61,3 +78,947 @@ int i2c_write16(i2c_t *i2c, uint16_t addr, uint16_t reg, uint16_t value) {
 	// Transfer a transaction with three I2C messages
 	return i2c_transfer(i2c, msgs, 1);
 }
+
+/*
+ * Largest block i2c_write_block8 stages on the stack.
+ */
+#define I2C_MAX_BLOCK 4096
+
+/*
+ * Read len bytes starting at 8 bit register into buf at off with one auto-increment transaction.
+ */
+int i2c_read_block8(i2c_t *i2c, uint16_t addr, uint16_t reg, uint8_t *buf, int off, size_t len) {
+	return i2c_read8(i2c, addr, reg, buf + off, len);
+}
+
+/*
+ * Write len bytes from buf at off starting at 8 bit register with one auto-increment transaction. Returns I2C_ERROR_ARG if len is
+ * over I2C_MAX_BLOCK (the handle error message is not updated) or the i2c_transfer error code.
+ */
+int i2c_write_block8(i2c_t *i2c, uint16_t addr, uint16_t reg, const uint8_t *buf, int off, size_t len) {
+	if (len > I2C_MAX_BLOCK) {
+		return I2C_ERROR_ARG;
+	}
+	uint8_t msg_buf[len + 1];
+	msg_buf[0] = reg & 0xff;
+	memcpy(msg_buf + 1, buf + off, len);
+	struct i2c_msg msgs[1] = {
+	// Write register address followed by data
+	{ .addr = addr, .flags = 0, .len = len + 1, .buf = msg_buf }, };
+	return i2c_transfer(i2c, msgs, 1);
+}
+
+/*
+ * Most messages i2c-dev accepts in one I2C_RDWR ioctl.
+ */
+#define I2C_MAX_MSGS 42
+
+/*
+ * Transfer count messages described by desc (address, flags, length and data offset per message) with buffers in one data arena.
+ * struct i2c_msg is built here, so Java does not depend on its layout, which differs between 32 and 64 bit. Returns 0 on success,
+ * I2C_ERROR_ARG if count is not 1 to I2C_MAX_MSGS (the handle error message is not updated) or the i2c_transfer error code.
+ */
+int i2c_transfer_packed(i2c_t *i2c, const int32_t *desc, int count, uint8_t *data) {
+	struct i2c_msg msgs[I2C_MAX_MSGS];
+	if (count < 1 || count > I2C_MAX_MSGS) {
+		return I2C_ERROR_ARG;
+	}
+	for (int i = 0; i < count; i++) {
+		msgs[i].addr = desc[i * 4];
+		msgs[i].flags = desc[i * 4 + 1];
+		msgs[i].len = desc[i * 4 + 2];
+		msgs[i].buf = data + desc[i * 4 + 3];
+	}
+	return i2c_transfer(i2c, msgs, count);
+}
+
+/*
+ * Default spidev buffer size if module parameter cannot be read.
+ */
+#define SPI_DEFAULT_BUFSIZ 4096
+
+/*
+ * Cached spidev buffer size.
+ */
+static uint32_t spi_bufsiz_cache;
+
+/*
+ * Return spidev buffer size from /sys/module/spidev/parameters/bufsiz. This is the most spidev accepts in one message.
+ */
+uint32_t spi_bufsiz(void) {
+	if (spi_bufsiz_cache == 0) {
+		uint32_t bufsiz = SPI_DEFAULT_BUFSIZ;
+		FILE *file = fopen("/sys/module/spidev/parameters/bufsiz", "r");
+		if (file != NULL) {
+			if (fscanf(file, "%u", &bufsiz) != 1 || bufsiz == 0) {
+				bufsiz = SPI_DEFAULT_BUFSIZ;
+			}
+			fclose(file);
+		}
+		spi_bufsiz_cache = bufsiz;
+	}
+	return spi_bufsiz_cache;
+}
+
+/*
+ * Shift out len bytes of txbuf while shifting in to rxbuf (NULL to discard). spidev rejects messages larger than bufsiz in total,
+ * so larger transfers are split into one message per bufsiz chunk. cs_change is set on every chunk but the last, which asks the
+ * controller to keep CS asserted between messages. Returns 0 on success or negative errno.
+ */
+int spi_transfer_chunked(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, size_t len) {
+	size_t chunk = spi_bufsiz();
+	size_t pos = 0;
+	struct spi_ioc_transfer xfer;
+	while (pos < len) {
+		size_t n = len - pos < chunk ? len - pos : chunk;
+		memset(&xfer, 0, sizeof(xfer));
+		xfer.tx_buf = (uintptr_t) (txbuf + pos);
+		xfer.rx_buf = rxbuf == NULL ? 0 : (uintptr_t) (rxbuf + pos);
+		xfer.len = n;
+		xfer.cs_change = pos + n < len;
+		if (ioctl(spi_fd(spi), SPI_IOC_MESSAGE(1), &xfer) < 1) {
+			return -errno;
+		}
+		pos += n;
+	}
+	return 0;
+}
+
+/*
+ * Submit count prebuilt transfers as one SPI message, so each segment keeps its own speed, bits per word, delay and cs_change.
+ * Returns total bytes transferred or negative errno.
+ */
+int spi_message(spi_t *spi, struct spi_ioc_transfer *xfers, int count) {
+	if (count < 1 || SPI_MSGSIZE(count) == 0) {
+		return -EINVAL;
+	}
+	int ret = ioctl(spi_fd(spi), SPI_IOC_MESSAGE(count), xfers);
+	return ret < 0 ? -errno : ret;
+}
+
+/*
+ * Shift out len bytes of buf starting at off. Receive buffer is NULL, so spidev does not copy anything back.
+ */
+int spi_write(spi_t *spi, const uint8_t *buf, int off, size_t len) {
+	return spi_transfer_chunked(spi, buf + off, NULL, len);
+}
+
+/*
+ * Shift out len bytes of txbuf starting at tx_off while shifting in to rxbuf starting at rx_off.
+ */
+int spi_transfer_range(spi_t *spi, const uint8_t *txbuf, int tx_off, uint8_t *rxbuf, int rx_off, size_t len) {
+	return spi_transfer_chunked(spi, txbuf + tx_off, rxbuf + rx_off, len);
+}
+
+/*
+ * Request count lines of a GPIO chip as one line request using GPIO v2 uAPI. event_buffer_size of 0 uses kernel default of 16
+ * events per line. Returns line request fd or negative errno.
+ */
+int gpio_lines_open(const char *path, const uint32_t *lines, uint32_t count, uint64_t flags, uint64_t values,
+		const char *consumer, uint32_t event_buffer_size) {
+#ifdef GPIO_V2_GET_LINE_IOCTL
+	struct gpio_v2_line_request req;
+	int chip_fd;
+	uint32_t i;
+	if (count == 0 || count > GPIO_V2_LINES_MAX) {
+		return -EINVAL;
+	}
+	memset(&req, 0, sizeof(req));
+	for (i = 0; i < count; i++) {
+		req.offsets[i] = lines[i];
+	}
+	if (consumer != NULL) {
+		strncpy(req.consumer, consumer, GPIO_MAX_NAME_SIZE - 1);
+	}
+	req.num_lines = count;
+	req.event_buffer_size = event_buffer_size;
+	req.config.flags = flags;
+	// Initial output values for all lines
+	if (flags & GPIO_V2_LINE_FLAG_OUTPUT) {
+		req.config.num_attrs = 1;
+		req.config.attrs[0].attr.id = GPIO_V2_LINE_ATTR_ID_OUTPUT_VALUES;
+		req.config.attrs[0].attr.values = values;
+		req.config.attrs[0].mask = count == 64 ? ~0ULL : (1ULL << count) - 1;
+	}
+	if ((chip_fd = open(path, O_RDWR | O_CLOEXEC)) < 0) {
+		return -errno;
+	}
+	if (ioctl(chip_fd, GPIO_V2_GET_LINE_IOCTL, &req) < 0) {
+		int err = errno;
+		close(chip_fd);
+		return -err;
+	}
+	// Line request fd stays valid after chip is closed
+	close(chip_fd);
+	return req.fd;
+#else
+	return -ENOTSUP;
+#endif
+}
+
+/*
+ * Get values of lines in mask with one ioctl. Bit n is line n of request.
+ */
+int gpio_lines_get_values(int fd, uint64_t mask, uint64_t *bits) {
+#ifdef GPIO_V2_LINE_GET_VALUES_IOCTL
+	struct gpio_v2_line_values values = { .bits = 0, .mask = mask };
+	if (ioctl(fd, GPIO_V2_LINE_GET_VALUES_IOCTL, &values) < 0) {
+		return -errno;
+	}
+	*bits = values.bits;
+	return 0;
+#else
+	return -ENOTSUP;
+#endif
+}
+
+/*
+ * Set values of lines in mask with one ioctl. Bit n is line n of request.
+ */
+int gpio_lines_set_values(int fd, uint64_t mask, uint64_t bits) {
+#ifdef GPIO_V2_LINE_SET_VALUES_IOCTL
+	struct gpio_v2_line_values values = { .bits = bits, .mask = mask };
+	if (ioctl(fd, GPIO_V2_LINE_SET_VALUES_IOCTL, &values) < 0) {
+		return -errno;
+	}
+	return 0;
+#else
+	return -ENOTSUP;
+#endif
+}
+
+/*
+ * Wait up to timeout_ms for fd to be readable. Returns 1 if readable, 0 on timeout or negative errno.
+ */
+static int gpio_wait_events(int fd, int timeout_ms) {
+	struct pollfd fds = { .fd = fd, .events = POLLIN | POLLPRI };
+	int ret = poll(&fds, 1, timeout_ms);
+	return ret < 0 ? -errno : ret;
+}
+
+/*
+ * Read queued GPIO v2 uAPI events up to max with one read.
+ */
+static int gpio_read_events_v2(int fd, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos,
+		int max) {
+#ifdef GPIO_V2_GET_LINE_IOCTL
+	struct gpio_v2_line_event buf[64];
+	int ret = gpio_wait_events(fd, timeout_ms);
+	if (ret <= 0) {
+		return ret;
+	}
+	ssize_t len = read(fd, buf, sizeof(buf[0]) * (max < 64 ? max : 64));
+	if (len < 0) {
+		return errno == EAGAIN ? 0 : -errno;
+	}
+	int count = len / sizeof(buf[0]);
+	for (int i = 0; i < count; i++) {
+		edges[i] = buf[i].id == GPIO_V2_LINE_EVENT_RISING_EDGE ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING;
+		timestamps[i] = buf[i].timestamp_ns;
+		lines[i] = buf[i].offset;
+		seqnos[i] = buf[i].seqno;
+	}
+	return count;
+#else
+	return -ENOTSUP;
+#endif
+}
+
+#if !defined(PERIPHERY_GPIO_CDEV_SUPPORT) || PERIPHERY_GPIO_CDEV_SUPPORT != 2
+/*
+ * Read queued GPIO v1 uAPI events up to max with one read. v1 ABI has no line offset or sequence numbers.
+ */
+static int gpio_read_events_v1(int fd, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos,
+		int max) {
+	struct gpioevent_data buf[64];
+	int ret = gpio_wait_events(fd, timeout_ms);
+	if (ret <= 0) {
+		return ret;
+	}
+	ssize_t len = read(fd, buf, sizeof(buf[0]) * (max < 64 ? max : 64));
+	if (len < 0) {
+		return errno == EAGAIN ? 0 : -errno;
+	}
+	int count = len / sizeof(buf[0]);
+	for (int i = 0; i < count; i++) {
+		edges[i] = buf[i].id == GPIOEVENT_EVENT_RISING_EDGE ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING;
+		timestamps[i] = buf[i].timestamp;
+		lines[i] = -1;
+		seqnos[i] = 0;
+	}
+	return count;
+}
+#endif
+
+/*
+ * Wait up to timeout_ms for edge events on line request fd from gpio_lines_open, then read all queued events up to max with one
+ * read. Line requests always use the v2 uAPI, so events carry line offsets and sequence numbers that let the caller detect events
+ * dropped by kernel FIFO overflow. Returns events read, 0 on timeout or negative errno.
+ */
+int gpio_lines_read_events(int fd, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos, int max) {
+	return gpio_read_events_v2(fd, timeout_ms, edges, timestamps, lines, seqnos, max);
+}
+
+/*
+ * Bulk read edge events of GPIO opened by c-periphery. The event layout follows the uAPI c-periphery was built with.
+ */
+int gpio_read_events(gpio_t *gpio, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos, int max) {
+#if defined(PERIPHERY_GPIO_CDEV_SUPPORT) && PERIPHERY_GPIO_CDEV_SUPPORT == 2
+	int count = gpio_read_events_v2(gpio_fd(gpio), timeout_ms, edges, timestamps, lines, seqnos, max);
+#else
+	int count = gpio_read_events_v1(gpio_fd(gpio), timeout_ms, edges, timestamps, lines, seqnos, max);
+#endif
+	for (int i = 0; i < count; i++) {
+		lines[i] = gpio_line(gpio);
+	}
+	return count;
+}
+
+/*
+ * Release line request.
+ */
+int gpio_lines_close(int fd) {
+	if (close(fd) < 0) {
+		return -errno;
+	}
+	return 0;
+}
+
+/*
+ * Create epoll set for GPIO line event fds.
+ */
+int gpio_epoll_create(void) {
+	int epfd = epoll_create1(EPOLL_CLOEXEC);
+	if (epfd < 0) {
+		return -errno;
+	}
+	return epfd;
+}
+
+/*
+ * Add line event fd to epoll set with caller's id. Line fd is set non-blocking, so it can be drained without blocking.
+ */
+int gpio_epoll_add(int epfd, int fd, int id) {
+	struct epoll_event event;
+	int flags;
+	if ((flags = fcntl(fd, F_GETFL)) < 0 || fcntl(fd, F_SETFL, flags | O_NONBLOCK) < 0) {
+		return -errno;
+	}
+	memset(&event, 0, sizeof(event));
+	event.events = EPOLLIN | EPOLLPRI;
+	// Keep id and fd together, so drain knows what to read and who to report
+	event.data.u64 = ((uint64_t) (uint32_t) id << 32) | (uint32_t) fd;
+	if (epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &event) < 0) {
+		return -errno;
+	}
+	return 0;
+}
+
+/*
+ * Remove line event fd from epoll set.
+ */
+int gpio_epoll_del(int epfd, int fd) {
+	struct epoll_event event;
+	memset(&event, 0, sizeof(event));
+	if (epoll_ctl(epfd, EPOLL_CTL_DEL, fd, &event) < 0) {
+		return -errno;
+	}
+	return 0;
+}
+
+/*
+ * Read all queued events of one line fd up to max. Returns events read or negative errno.
+ */
+static int gpio_drain_fd(int fd, int id, int *ids, int *edges, uint64_t *timestamps, int max) {
+#if defined(PERIPHERY_GPIO_CDEV_SUPPORT) && PERIPHERY_GPIO_CDEV_SUPPORT == 2
+	struct gpio_v2_line_event buf[16];
+#else
+	struct gpioevent_data buf[16];
+#endif
+	int count = 0;
+	while (count < max) {
+		int want = max - count < 16 ? max - count : 16;
+		ssize_t len = read(fd, buf, sizeof(buf[0]) * want);
+		if (len < 0) {
+			if (errno == EAGAIN || errno == EWOULDBLOCK) {
+				break;
+			}
+			return -errno;
+		}
+		int n = len / sizeof(buf[0]);
+		for (int i = 0; i < n; i++, count++) {
+			ids[count] = id;
+#if defined(PERIPHERY_GPIO_CDEV_SUPPORT) && PERIPHERY_GPIO_CDEV_SUPPORT == 2
+			edges[count] = buf[i].id == GPIO_V2_LINE_EVENT_RISING_EDGE ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING;
+			timestamps[count] = buf[i].timestamp_ns;
+#else
+			edges[count] = buf[i].id == GPIOEVENT_EVENT_RISING_EDGE ? GPIO_EDGE_RISING : GPIO_EDGE_FALLING;
+			timestamps[count] = buf[i].timestamp;
+#endif
+		}
+		// Short read means kernel FIFO is empty
+		if (n < want) {
+			break;
+		}
+	}
+	return count;
+}
+
+/*
+ * Wait for line events on epoll set and drain every ready line fd into caller's arrays. Returns events read, 0 on timeout or
+ * negative errno.
+ */
+int gpio_epoll_drain(int epfd, int timeout_ms, int *ids, int *edges, uint64_t *timestamps, int max) {
+	struct epoll_event events[32];
+	int ready = epoll_wait(epfd, events, 32, timeout_ms);
+	if (ready < 0) {
+		return errno == EINTR ? 0 : -errno;
+	}
+	int count = 0;
+	for (int i = 0; i < ready && count < max; i++) {
+		int fd = (int) (events[i].data.u64 & 0xffffffff);
+		int id = (int) (events[i].data.u64 >> 32);
+		int rc = gpio_drain_fd(fd, id, &ids[count], &edges[count], &timestamps[count], max - count);
+		if (rc < 0) {
+			return rc;
+		}
+		count += rc;
+	}
+	return count;
+}
+
+/*
+ * Close epoll set.
+ */
+int gpio_epoll_close(int epfd) {
+	if (close(epfd) < 0) {
+		return -errno;
+	}
+	return 0;
+}
+
+/*
+ * Check count 32 bit words starting at offset are aligned and inside mapped memory.
+ */
+static inline int mmio_check_block(mmio_t *mmio, uint32_t offset, int count) {
+	return count >= 0 && (offset & 3) == 0 && (size_t) offset + (size_t) count * 4 <= mmio_size(mmio);
+}
+
+/*
+ * Read count 32 bit registers starting at offset into dst. Returns 0 on success or negative errno.
+ */
+int mmio_read32_block(mmio_t *mmio, uint32_t offset, uint32_t *dst, int count) {
+	if (!mmio_check_block(mmio, offset, count)) {
+		return -EINVAL;
+	}
+	volatile uint32_t *reg = (volatile uint32_t *) ((uint8_t *) mmio_ptr(mmio) + offset);
+	for (int i = 0; i < count; i++) {
+		dst[i] = reg[i];
+	}
+	return 0;
+}
+
+/*
+ * Write count 32 bit registers starting at offset from src. Returns 0 on success or negative errno.
+ */
+int mmio_write32_block(mmio_t *mmio, uint32_t offset, const uint32_t *src, int count) {
+	if (!mmio_check_block(mmio, offset, count)) {
+		return -EINVAL;
+	}
+	volatile uint32_t *reg = (volatile uint32_t *) ((uint8_t *) mmio_ptr(mmio) + offset);
+	for (int i = 0; i < count; i++) {
+		reg[i] = src[i];
+	}
+	return 0;
+}
+
+/*
+ * Monotonic time in nanoseconds.
+ */
+static inline uint64_t mmio_now_ns(void) {
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return (uint64_t) ts.tv_sec * 1000000000ULL + ts.tv_nsec;
+}
+
+/*
+ * Sample 32 bit register at offset count times interval_ns apart using busy-wait timing (0 samples as fast as possible). After
+ * capture each sample is packed so bit n is set if masks[n] is set. elapsed is total capture time in nanoseconds. Returns 0 on
+ * success or negative errno.
+ */
+int mmio_capture(mmio_t *mmio, uint32_t offset, const uint32_t *masks, int pins, uint32_t *samples, int count,
+		uint64_t interval_ns, uint64_t *elapsed) {
+	if (pins < 1 || pins > 32 || count < 0 || (offset & 3) != 0 || (size_t) offset + 4 > mmio_size(mmio)) {
+		return -EINVAL;
+	}
+	volatile uint32_t *reg = (volatile uint32_t *) ((uint8_t *) mmio_ptr(mmio) + offset);
+	uint64_t start = mmio_now_ns();
+	if (interval_ns == 0) {
+		for (int i = 0; i < count; i++) {
+			samples[i] = *reg;
+		}
+	} else {
+		uint64_t next = start;
+		for (int i = 0; i < count; i++) {
+			while (mmio_now_ns() < next) {
+			}
+			samples[i] = *reg;
+			next += interval_ns;
+		}
+	}
+	*elapsed = mmio_now_ns() - start;
+	// Pack outside of sample loop to keep it tight
+	for (int i = 0; i < count; i++) {
+		uint32_t value = samples[i];
+		uint32_t packed = 0;
+		for (int n = 0; n < pins; n++) {
+			if ((value & masks[n]) != 0) {
+				packed |= 1U << n;
+			}
+		}
+		samples[i] = packed;
+	}
+	return 0;
+}
+
+/*
+ * Watch trace file header (64 bytes) followed by records.
+ */
+typedef struct {
+	char magic[8];
+	uint32_t version;
+	uint32_t words;
+	uint64_t base;
+	uint32_t offset;
+	uint32_t record_size;
+	uint64_t interval_ns;
+	uint64_t records;
+	uint64_t samples;
+	uint64_t elapsed_ns;
+} mmio_trace_header_t;
+
+/*
+ * Watch trace record. Timestamp is relative to start of watch.
+ */
+typedef struct {
+	uint64_t timestamp_ns;
+	uint32_t offset;
+	uint32_t value;
+} mmio_trace_record_t;
+
+/*
+ * Sample words 32 bit registers starting at offset every interval_ns (0 as fast as possible) for duration_ns and write only
+ * changed words with timestamps to a memory mapped trace file. Initial values are recorded at time 0, so the trace can be
+ * replayed. Stops early when max_records is reached. Returns 0 on success or negative errno.
+ */
+int mmio_watch(mmio_t *mmio, uint32_t offset, int words, uint64_t interval_ns, uint64_t duration_ns, const char *path,
+		uint64_t max_records) {
+	if (words < 1 || max_records < (uint64_t) words || !mmio_check_block(mmio, offset, words)) {
+		return -EINVAL;
+	}
+	size_t len = sizeof(mmio_trace_header_t) + max_records * sizeof(mmio_trace_record_t);
+	int fd = open(path, O_RDWR | O_CREAT | O_TRUNC, 0644);
+	if (fd < 0) {
+		return -errno;
+	}
+	if (ftruncate(fd, len) < 0) {
+		int ret = -errno;
+		close(fd);
+		return ret;
+	}
+	void *map = mmap(NULL, len, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0);
+	if (map == MAP_FAILED) {
+		int ret = -errno;
+		close(fd);
+		return ret;
+	}
+	uint32_t *last = malloc(sizeof(uint32_t) * words);
+	if (last == NULL) {
+		munmap(map, len);
+		close(fd);
+		return -ENOMEM;
+	}
+	mmio_trace_header_t *header = (mmio_trace_header_t *) map;
+	mmio_trace_record_t *records = (mmio_trace_record_t *) ((uint8_t *) map + sizeof(mmio_trace_header_t));
+	volatile uint32_t *reg = (volatile uint32_t *) ((uint8_t *) mmio_ptr(mmio) + offset);
+	uint64_t count = 0;
+	uint64_t samples = 1;
+	uint64_t start = mmio_now_ns();
+	for (int i = 0; i < words; i++) {
+		last[i] = reg[i];
+		records[count].timestamp_ns = 0;
+		records[count].offset = offset + i * 4;
+		records[count++].value = last[i];
+	}
+	uint64_t next = start + interval_ns;
+	uint64_t now = start;
+	while (now - start < duration_ns && count < max_records) {
+		while ((now = mmio_now_ns()) < next) {
+		}
+		for (int i = 0; i < words && count < max_records; i++) {
+			uint32_t value = reg[i];
+			if (value != last[i]) {
+				last[i] = value;
+				records[count].timestamp_ns = now - start;
+				records[count].offset = offset + i * 4;
+				records[count++].value = value;
+			}
+		}
+		samples++;
+		next += interval_ns;
+	}
+	memcpy(header->magic, "JUIOTRCE", 8);
+	header->version = 1;
+	header->words = words;
+	header->base = mmio_base(mmio);
+	header->offset = offset;
+	header->record_size = sizeof(mmio_trace_record_t);
+	header->interval_ns = interval_ns;
+	header->records = count;
+	header->samples = samples;
+	header->elapsed_ns = mmio_now_ns() - start;
+	free(last);
+	munmap(map, len);
+	// Trim unused records
+	int ret = ftruncate(fd, sizeof(mmio_trace_header_t) + count * sizeof(mmio_trace_record_t)) < 0 ? -errno : 0;
+	close(fd);
+	return ret;
+}
+
+/*
+ * Waveform step opcodes.
+ */
+#define MMIO_WAVE_WRITE 0
+#define MMIO_WAVE_OR 1
+#define MMIO_WAVE_AND 2
+#define MMIO_WAVE_XOR 3
+
+/*
+ * Play waveform program repeat times. Each step is 4 ints: opcode, register offset, value and delay in nanoseconds until the next
+ * step. Steps are scheduled against absolute time with busy-wait, so delays do not drift. elapsed is total play time in
+ * nanoseconds. Returns 0 on success or negative errno.
+ */
+int mmio_waveform(mmio_t *mmio, const int32_t *program, int steps, int repeat, uint64_t *elapsed) {
+	size_t size = mmio_size(mmio);
+	// Validate once so play loop does no checks
+	for (int i = 0; i < steps; i++) {
+		const int32_t *step = program + i * 4;
+		if (step[0] < MMIO_WAVE_WRITE || step[0] > MMIO_WAVE_XOR || step[1] < 0 || (step[1] & 3) != 0
+				|| (size_t) step[1] + 4 > size || step[3] < 0) {
+			return -EINVAL;
+		}
+	}
+	uint8_t *base = (uint8_t *) mmio_ptr(mmio);
+	uint64_t start = mmio_now_ns();
+	uint64_t next = start;
+	for (int r = 0; r < repeat; r++) {
+		for (int i = 0; i < steps; i++) {
+			const int32_t *step = program + i * 4;
+			volatile uint32_t *reg = (volatile uint32_t *) (base + step[1]);
+			while (mmio_now_ns() < next) {
+			}
+			switch (step[0]) {
+			case MMIO_WAVE_WRITE:
+				*reg = step[2];
+				break;
+			case MMIO_WAVE_OR:
+				*reg |= step[2];
+				break;
+			case MMIO_WAVE_AND:
+				*reg &= step[2];
+				break;
+			default:
+				*reg ^= step[2];
+			}
+			next += step[3];
+		}
+	}
+	*elapsed = mmio_now_ns() - start;
+	return 0;
+}
+
+/*
+ * Software PWM state shared by Java and PWM thread.
+ */
+typedef struct {
+	uint8_t *base;
+	int32_t *channels;
+	int count;
+	uint32_t tick_ns;
+	uint32_t period_ticks;
+	volatile int running;
+	pthread_t thread;
+	// Written by Java, latched by PWM thread at start of each period
+	uint32_t *duty;
+	uint32_t *latched;
+} mmio_pwm_t;
+
+/*
+ * Execute waveform opcode on register.
+ */
+static inline void mmio_op(uint8_t *base, const int32_t *op) {
+	volatile uint32_t *reg = (volatile uint32_t *) (base + op[1]);
+	switch (op[0]) {
+	case MMIO_WAVE_WRITE:
+		*reg = op[2];
+		break;
+	case MMIO_WAVE_OR:
+		*reg |= op[2];
+		break;
+	case MMIO_WAVE_AND:
+		*reg &= op[2];
+		break;
+	default:
+		*reg ^= op[2];
+	}
+}
+
+/*
+ * PWM thread. Every period latches duty cycles, turns on channels with duty > 0 and turns each off when tick reaches its duty.
+ */
+static void *mmio_pwm_run(void *arg) {
+	mmio_pwm_t *pwm = (mmio_pwm_t *) arg;
+	struct timespec next;
+	clock_gettime(CLOCK_MONOTONIC, &next);
+	uint32_t tick = 0;
+	while (pwm->running) {
+		if (tick == 0) {
+			for (int i = 0; i < pwm->count; i++) {
+				uint32_t duty = __atomic_load_n(&pwm->duty[i], __ATOMIC_ACQUIRE);
+				pwm->latched[i] = duty;
+				const int32_t *channel = pwm->channels + i * 6;
+				if (duty > 0) {
+					mmio_op(pwm->base, channel);
+				} else {
+					mmio_op(pwm->base, channel + 3);
+				}
+			}
+		} else {
+			for (int i = 0; i < pwm->count; i++) {
+				if (pwm->latched[i] == tick) {
+					mmio_op(pwm->base, pwm->channels + i * 6 + 3);
+				}
+			}
+		}
+		if (++tick == pwm->period_ticks) {
+			tick = 0;
+		}
+		next.tv_nsec += pwm->tick_ns;
+		while (next.tv_nsec >= 1000000000L) {
+			next.tv_nsec -= 1000000000L;
+			next.tv_sec++;
+		}
+		clock_nanosleep(CLOCK_MONOTONIC, TIMER_ABSTIME, &next, NULL);
+	}
+	// Leave all channels off
+	for (int i = 0; i < pwm->count; i++) {
+		mmio_op(pwm->base, pwm->channels + i * 6 + 3);
+	}
+	return NULL;
+}
+
+/*
+ * Start software PWM thread. Each channel is 6 ints: on opcode, on offset, on value, off opcode, off offset and off value (see
+ * mmio_waveform). Duty cycles are in ticks from 0 (off) to period_ticks (on). Returns PWM handle or NULL on failure.
+ */
+void *mmio_pwm_start(mmio_t *mmio, const int32_t *channels, int count, uint32_t tick_ns, uint32_t period_ticks) {
+	size_t size = mmio_size(mmio);
+	if (count < 1 || tick_ns == 0 || period_ticks < 2) {
+		return NULL;
+	}
+	for (int i = 0; i < count * 2; i++) {
+		const int32_t *op = channels + i * 3;
+		if (op[0] < MMIO_WAVE_WRITE || op[0] > MMIO_WAVE_XOR || op[1] < 0 || (op[1] & 3) != 0 || (size_t) op[1] + 4 > size) {
+			return NULL;
+		}
+	}
+	mmio_pwm_t *pwm = calloc(1, sizeof(mmio_pwm_t));
+	if (pwm == NULL) {
+		return NULL;
+	}
+	pwm->channels = malloc(sizeof(int32_t) * 6 * count);
+	pwm->duty = calloc(count, sizeof(uint32_t));
+	pwm->latched = calloc(count, sizeof(uint32_t));
+	if (pwm->channels == NULL || pwm->duty == NULL || pwm->latched == NULL) {
+		mmio_pwm_stop(pwm);
+		return NULL;
+	}
+	memcpy(pwm->channels, channels, sizeof(int32_t) * 6 * count);
+	pwm->base = (uint8_t *) mmio_ptr(mmio);
+	pwm->count = count;
+	pwm->tick_ns = tick_ns;
+	pwm->period_ticks = period_ticks;
+	pwm->running = 1;
+	if (pthread_create(&pwm->thread, NULL, mmio_pwm_run, pwm) != 0) {
+		pwm->running = 0;
+		mmio_pwm_stop(pwm);
+		return NULL;
+	}
+	return pwm;
+}
+
+/*
+ * Return duty cycle array shared with PWM thread.
+ */
+uint32_t *mmio_pwm_duty(void *pwm) {
+	return ((mmio_pwm_t *) pwm)->duty;
+}
+
+/*
+ * Stop PWM thread, turn all channels off and free PWM handle.
+ */
+int mmio_pwm_stop(void *pwm) {
+	mmio_pwm_t *p = (mmio_pwm_t *) pwm;
+	int ret = 0;
+	if (p->running) {
+		p->running = 0;
+		ret = -pthread_join(p->thread, NULL);
+	}
+	free(p->channels);
+	free(p->duty);
+	free(p->latched);
+	free(p);
+	return ret;
+}
+
+/*
+ * Wait up to timeout_ms for serial input, then read what is available up to len with one read. Unlike serial_read this does
+ * not wait for len bytes, so a reader thread can fill a ring buffer in large chunks. Returns bytes read, 0 on timeout or
+ * negative errno (-EPIPE on hangup).
+ */
+int serial_fd_read(int fd, uint8_t *buf, int len, int timeout_ms) {
+	struct pollfd fds = { .fd = fd, .events = POLLIN };
+	int ret = poll(&fds, 1, timeout_ms);
+	if (ret < 0) {
+		return errno == EINTR ? 0 : -errno;
+	} else if (ret == 0) {
+		return 0;
+	}
+	if (!(fds.revents & POLLIN)) {
+		return fds.revents & POLLNVAL ? -EBADF : -EPIPE;
+	}
+	ssize_t count = read(fd, buf, len);
+	if (count < 0) {
+		return errno == EAGAIN || errno == EINTR ? 0 : -errno;
+	} else if (count == 0) {
+		return -EPIPE;
+	}
+	return count;
+}
+
+/*
+ * Write all len bytes to serial fd. Returns bytes written or negative errno.
+ */
+int serial_fd_write(int fd, const uint8_t *buf, int len) {
+	int written = 0;
+	while (written < len) {
+		ssize_t count = write(fd, buf + written, len - written);
+		if (count < 0) {
+			if (errno == EINTR) {
+				continue;
+			}
+			return -errno;
+		}
+		written += count;
+	}
+	return written;
+}
+
+/*
+ * Open pseudo-terminal pair in raw mode for testing and simulation. fds[0] is the master and fds[1] a slave fd held open, so the
+ * master does not see a hangup while the other end is closed. The slave path (e.g. "/dev/pts/3") is copied to name and can be
+ * opened with serial_open. Returns 0 or negative errno.
+ */
+int serial_pty_open(int *fds, char *name, int len) {
+	unsigned int num;
+	int unlock = 0;
+	struct termios tio;
+	int master = open("/dev/ptmx", O_RDWR | O_NOCTTY | O_CLOEXEC);
+	if (master < 0) {
+		return -errno;
+	}
+	if (ioctl(master, TIOCSPTLCK, &unlock) < 0 || ioctl(master, TIOCGPTN, &num) < 0) {
+		int err = errno;
+		close(master);
+		return -err;
+	}
+	snprintf(name, len, "/dev/pts/%u", num);
+	int slave = open(name, O_RDWR | O_NOCTTY | O_CLOEXEC);
+	if (slave < 0) {
+		int err = errno;
+		close(master);
+		return -err;
+	}
+	// No echo or line discipline processing until serial_open configures the slave
+	if (tcgetattr(slave, &tio) < 0 || (cfmakeraw(&tio), tcsetattr(slave, TCSANOW, &tio)) < 0) {
+		int err = errno;
+		close(slave);
+		close(master);
+		return -err;
+	}
+	fds[0] = master;
+	fds[1] = slave;
+	return 0;
+}
+
+/*
+ * Close fd opened by serial_pty_open.
+ */
+int serial_fd_close(int fd) {
+	if (close(fd) < 0) {
+		return -errno;
+	}
+	return 0;
+}
+
+/*
+ * Modbus RTU request and response. Input is flushed and the line is kept silent for silence_us (the rest of t3.5) before tx is
+ * sent, then tcdrain waits until it is on the wire. The response ends when rx_len bytes arrive or the line is silent for gap_us
+ * (t3.5) after the first byte, so exception responses are not held until the timeout. ppoll is used for microsecond gaps.
+ * Returns bytes received, 0 if nothing arrived within timeout_ms or negative errno.
+ */
+int serial_rtu_transfer(int fd, const uint8_t *tx, int tx_len, uint8_t *rx, int rx_len, int timeout_ms, int silence_us,
+		int gap_us) {
+	if (tcflush(fd, TCIFLUSH) < 0) {
+		return -errno;
+	}
+	if (silence_us > 0) {
+		struct timespec silence = { .tv_sec = silence_us / 1000000, .tv_nsec = (silence_us % 1000000) * 1000L };
+		while (clock_nanosleep(CLOCK_MONOTONIC, 0, &silence, &silence) == EINTR) {
+		}
+	}
+	int ret = serial_fd_write(fd, tx, tx_len);
+	if (ret < 0) {
+		return ret;
+	}
+	if (tcdrain(fd) < 0) {
+		return -errno;
+	}
+	int count = 0;
+	while (count < rx_len) {
+		int64_t wait_us = count == 0 ? (int64_t) timeout_ms * 1000 : gap_us;
+		struct timespec ts = { .tv_sec = wait_us / 1000000, .tv_nsec = (wait_us % 1000000) * 1000L };
+		struct pollfd pfd = { .fd = fd, .events = POLLIN };
+		ret = ppoll(&pfd, 1, count == 0 && timeout_ms < 0 ? NULL : &ts, NULL);
+		if (ret < 0) {
+			if (errno == EINTR) {
+				continue;
+			}
+			return -errno;
+		} else if (ret == 0) {
+			// Timeout before first byte or t3.5 silence ends frame
+			break;
+		}
+		ssize_t len = read(fd, rx + count, rx_len - count);
+		if (len < 0) {
+			if (errno == EAGAIN || errno == EINTR) {
+				continue;
+			}
+			return -errno;
+		} else if (len == 0) {
+			return -EPIPE;
+		}
+		count += len;
+	}
+	return count;
+}
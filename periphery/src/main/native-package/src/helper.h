@@ -8,12 +8,73 @@
 extern "C" {
 #endif
 
+#include <stdint.h>
+#include <linux/spi/spidev.h>
+#include <linux/gpio.h>
 #include "i2c.h"
+#include "spi.h"
+#include "gpio.h"
+#include "mmio.h"
+#include "serial.h"
+
+/*
+ * gpio_v2_line_flag values for GpioLineGroup constants if linux/gpio.h predates the v2 uAPI. Line group functions then return
+ * -ENOTSUP.
+ */
+#ifndef GPIO_V2_GET_LINE_IOCTL
+#define GPIO_V2_LINE_FLAG_ACTIVE_LOW (1ULL << 1)
+#define GPIO_V2_LINE_FLAG_INPUT (1ULL << 2)
+#define GPIO_V2_LINE_FLAG_OUTPUT (1ULL << 3)
+#define GPIO_V2_LINE_FLAG_EDGE_RISING (1ULL << 4)
+#define GPIO_V2_LINE_FLAG_EDGE_FALLING (1ULL << 5)
+#define GPIO_V2_LINE_FLAG_OPEN_DRAIN (1ULL << 6)
+#define GPIO_V2_LINE_FLAG_OPEN_SOURCE (1ULL << 7)
+#define GPIO_V2_LINE_FLAG_BIAS_PULL_UP (1ULL << 8)
+#define GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN (1ULL << 9)
+#define GPIO_V2_LINE_FLAG_BIAS_DISABLED (1ULL << 10)
+#define GPIO_V2_LINE_FLAG_EVENT_CLOCK_REALTIME (1ULL << 11)
+#endif
 
 int i2c_read8(i2c_t *i2c, uint16_t addr, uint16_t reg, uint8_t *buf, size_t len);
 int i2c_read16(i2c_t *i2c, uint16_t addr, uint16_t reg, uint8_t *buf, size_t len);
 int i2c_write8(i2c_t *i2c, uint16_t addr, uint16_t reg, uint16_t value);
 int i2c_write16(i2c_t *i2c, uint16_t addr, uint16_t reg, uint16_t value);
+int i2c_read_block8(i2c_t *i2c, uint16_t addr, uint16_t reg, uint8_t *buf, int off, size_t len);
+int i2c_write_block8(i2c_t *i2c, uint16_t addr, uint16_t reg, const uint8_t *buf, int off, size_t len);
+int i2c_transfer_packed(i2c_t *i2c, const int32_t *desc, int count, uint8_t *data);
+uint32_t spi_bufsiz(void);
+int spi_transfer_chunked(spi_t *spi, const uint8_t *txbuf, uint8_t *rxbuf, size_t len);
+int spi_message(spi_t *spi, struct spi_ioc_transfer *xfers, int count);
+int spi_write(spi_t *spi, const uint8_t *buf, int off, size_t len);
+int spi_transfer_range(spi_t *spi, const uint8_t *txbuf, int tx_off, uint8_t *rxbuf, int rx_off, size_t len);
+int gpio_lines_open(const char *path, const uint32_t *lines, uint32_t count, uint64_t flags, uint64_t values,
+		const char *consumer, uint32_t event_buffer_size);
+int gpio_lines_get_values(int fd, uint64_t mask, uint64_t *bits);
+int gpio_lines_set_values(int fd, uint64_t mask, uint64_t bits);
+int gpio_lines_close(int fd);
+int gpio_lines_read_events(int fd, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos, int max);
+int gpio_read_events(gpio_t *gpio, int timeout_ms, int *edges, uint64_t *timestamps, int *lines, uint32_t *seqnos, int max);
+int gpio_epoll_create(void);
+int gpio_epoll_add(int epfd, int fd, int id);
+int gpio_epoll_del(int epfd, int fd);
+int gpio_epoll_drain(int epfd, int timeout_ms, int *ids, int *edges, uint64_t *timestamps, int max);
+int gpio_epoll_close(int epfd);
+int mmio_read32_block(mmio_t *mmio, uint32_t offset, uint32_t *dst, int count);
+int mmio_write32_block(mmio_t *mmio, uint32_t offset, const uint32_t *src, int count);
+int mmio_capture(mmio_t *mmio, uint32_t offset, const uint32_t *masks, int pins, uint32_t *samples, int count,
+		uint64_t interval_ns, uint64_t *elapsed);
+int mmio_watch(mmio_t *mmio, uint32_t offset, int words, uint64_t interval_ns, uint64_t duration_ns, const char *path,
+		uint64_t max_records);
+int mmio_waveform(mmio_t *mmio, const int32_t *program, int steps, int repeat, uint64_t *elapsed);
+void *mmio_pwm_start(mmio_t *mmio, const int32_t *channels, int count, uint32_t tick_ns, uint32_t period_ticks);
+uint32_t *mmio_pwm_duty(void *pwm);
+int mmio_pwm_stop(void *pwm);
+int serial_fd_read(int fd, uint8_t *buf, int len, int timeout_ms);
+int serial_fd_write(int fd, const uint8_t *buf, int len);
+int serial_pty_open(int *fds, char *name, int len);
+int serial_fd_close(int fd);
+int serial_rtu_transfer(int fd, const uint8_t *tx, int tx_len, uint8_t *rx, int rx_len, int timeout_ms, int silence_us,
+		int gap_us);
 
 #ifdef __cplusplus
 }
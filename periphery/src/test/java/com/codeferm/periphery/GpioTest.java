@@ -30,11 +30,28 @@ import static com.codeferm.periphery.Gpio.GPIO_ERROR_UNSUPPORTED;
 import static com.codeferm.periphery.Gpio.GPIO_EVENT_CLOCK_HTE;
 import static com.codeferm.periphery.Gpio.GPIO_EVENT_CLOCK_MONOTONIC;
 import static com.codeferm.periphery.Gpio.GPIO_EVENT_CLOCK_REALTIME;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_ACTIVE_LOW;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_BIAS_DISABLED;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_BIAS_PULL_UP;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_EDGE_FALLING;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_EDGE_RISING;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_EVENT_CLOCK_REALTIME;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_INPUT;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_OPEN_DRAIN;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_OPEN_SOURCE;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_OUTPUT;
+import com.codeferm.periphery.device.GpioEventRing;
+import java.util.ArrayList;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test GPIO constants.
+ * Test GPIO constants, line group flags, dropped event counting and event ring.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -81,4 +98,108 @@ public class GpioTest {
         assertEquals(1, GPIO_DRIVE_OPEN_DRAIN);
         assertEquals(2, GPIO_DRIVE_OPEN_SOURCE);
     }
+
+    /**
+     * Test dropped event counting from sequence number gaps.
+     */
+    @Test
+    public void events() {
+        final var events = new GpioEvents(4);
+        final var seqnos = events.getSeqnos();
+        seqnos[0] = 1;
+        seqnos[1] = 2;
+        seqnos[2] = 5;
+        events.update(3);
+        assertEquals(3, events.getCount());
+        assertEquals(2, events.getDropped());
+        assertEquals(5, events.getLastSeqno());
+        // Gap across reads
+        seqnos[0] = 7;
+        events.update(1);
+        assertEquals(3, events.getDropped());
+        // Unsigned wrap past 0xffffffff
+        final var wrap = new GpioEvents(2);
+        wrap.getSeqnos()[0] = 0xfffffffe;
+        wrap.getSeqnos()[1] = 1;
+        wrap.update(2);
+        assertEquals(2, wrap.getDropped());
+        // v1 events have no sequence numbers
+        final var v1 = new GpioEvents(2);
+        v1.update(2);
+        assertEquals(0, v1.getDropped());
+    }
+
+    /**
+     * Test line group flag values, composition and argument checks without a chip.
+     */
+    @Test
+    public void lineGroupFlags() {
+        // enum gpio_v2_line_flag
+        assertEquals(1L << 1, GPIO_V2_LINE_FLAG_ACTIVE_LOW);
+        assertEquals(1L << 2, GPIO_V2_LINE_FLAG_INPUT);
+        assertEquals(1L << 3, GPIO_V2_LINE_FLAG_OUTPUT);
+        assertEquals(1L << 4, GPIO_V2_LINE_FLAG_EDGE_RISING);
+        assertEquals(1L << 5, GPIO_V2_LINE_FLAG_EDGE_FALLING);
+        assertEquals(1L << 6, GPIO_V2_LINE_FLAG_OPEN_DRAIN);
+        assertEquals(1L << 7, GPIO_V2_LINE_FLAG_OPEN_SOURCE);
+        assertEquals(1L << 8, GPIO_V2_LINE_FLAG_BIAS_PULL_UP);
+        assertEquals(1L << 9, GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN);
+        assertEquals(1L << 10, GPIO_V2_LINE_FLAG_BIAS_DISABLED);
+        assertEquals(1L << 11, GPIO_V2_LINE_FLAG_EVENT_CLOCK_REALTIME);
+        // Valid combinations
+        GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_INPUT | GPIO_V2_LINE_FLAG_EDGE_RISING | GPIO_V2_LINE_FLAG_EDGE_FALLING
+                | GPIO_V2_LINE_FLAG_BIAS_PULL_UP | GPIO_V2_LINE_FLAG_ACTIVE_LOW | GPIO_V2_LINE_FLAG_EVENT_CLOCK_REALTIME);
+        GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_OUTPUT | GPIO_V2_LINE_FLAG_OPEN_DRAIN | GPIO_V2_LINE_FLAG_BIAS_DISABLED);
+        // Conflicts the kernel would reject
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(0));
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_INPUT
+                | GPIO_V2_LINE_FLAG_OUTPUT));
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_OUTPUT
+                | GPIO_V2_LINE_FLAG_EDGE_RISING));
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_INPUT
+                | GPIO_V2_LINE_FLAG_OPEN_DRAIN));
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_OUTPUT
+                | GPIO_V2_LINE_FLAG_OPEN_DRAIN | GPIO_V2_LINE_FLAG_OPEN_SOURCE));
+        assertThrows(IllegalArgumentException.class, () -> GpioLineGroup.checkFlags(GPIO_V2_LINE_FLAG_INPUT
+                | GPIO_V2_LINE_FLAG_BIAS_PULL_UP | GPIO_V2_LINE_FLAG_BIAS_PULL_DOWN));
+        // Line count and flags are checked before the chip is opened
+        assertThrows(IllegalArgumentException.class, () -> new GpioLineGroup("/dev/null", new int[0], GPIO_V2_LINE_FLAG_INPUT));
+        assertThrows(IllegalArgumentException.class, () -> new GpioLineGroup("/dev/null", new int[65], GPIO_V2_LINE_FLAG_INPUT));
+        assertThrows(IllegalArgumentException.class, () -> new GpioLineGroup("/dev/null", new int[]{1, 2},
+                GPIO_V2_LINE_FLAG_OUTPUT | GPIO_V2_LINE_FLAG_EDGE_FALLING));
+    }
+
+    /**
+     * Test event loop ring order, full ring drops and drain scheduling without a chip.
+     */
+    @Test
+    public void eventRing() {
+        final var seen = new ArrayList<Long>();
+        final var ring = new GpioEventRing(7, (line, edge, timestamp) -> {
+            assertEquals(7, line);
+            if (timestamp == 2) {
+                throw new IllegalStateException("Handler failed");
+            }
+            seen.add(timestamp);
+        }, 3);
+        assertEquals(7, ring.getLine());
+        // Only first offer schedules drain
+        assertTrue(ring.offer(GPIO_EDGE_RISING, 1));
+        assertFalse(ring.offer(GPIO_EDGE_FALLING, 2));
+        assertFalse(ring.offer(GPIO_EDGE_RISING, 3));
+        // Ring full
+        assertFalse(ring.offer(GPIO_EDGE_FALLING, 4));
+        assertEquals(1, ring.getDropped());
+        // Handler error does not stop drain
+        ring.drain();
+        assertEquals(List.of(1L, 3L), seen);
+        // Drained ring schedules again and wraps
+        assertTrue(ring.offer(GPIO_EDGE_RISING, 5));
+        assertFalse(ring.offer(GPIO_EDGE_FALLING, 6));
+        ring.drain();
+        assertEquals(List.of(1L, 3L, 5L, 6L), seen);
+        assertEquals(1, ring.getDropped());
+        assertThrows(IllegalArgumentException.class, () -> new GpioEventRing(0, (line, edge, timestamp) -> {
+        }, 0));
+    }
 }
@@ -3,17 +3,32 @@
  */
 package com.codeferm.periphery;
 
+import com.codeferm.periphery.device.I2cBlockBus;
+import com.codeferm.periphery.device.I2cBus;
+import com.codeferm.periphery.device.I2cBusScheduler;
+import com.codeferm.periphery.device.I2cTransaction;
 import static com.codeferm.periphery.I2c.I2C_ERROR_ARG;
 import static com.codeferm.periphery.I2c.I2C_ERROR_CLOSE;
 import static com.codeferm.periphery.I2c.I2C_ERROR_NOT_SUPPORTED;
 import static com.codeferm.periphery.I2c.I2C_ERROR_OPEN;
 import static com.codeferm.periphery.I2c.I2C_ERROR_QUERY;
 import static com.codeferm.periphery.I2c.I2C_ERROR_TRANSFER;
+import static com.codeferm.periphery.I2c.I2C_M_IGNORE_NAK;
+import static com.codeferm.periphery.I2c.I2C_M_RD;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test I2C constants.
+ * Test I2C constants, word decoding, transaction packing and bus scheduling.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -34,4 +49,185 @@ public class I2cTest {
         assertEquals(-5, I2C_ERROR_TRANSFER);
         assertEquals(-6, I2C_ERROR_CLOSE);
     }
+
+    /**
+     * Test word decoding helpers.
+     */
+    @Test
+    public void decode() {
+        final var buf = new byte[]{(byte) 0xff, (byte) 0x38, (byte) 0x01, (byte) 0x80};
+        assertEquals(-200, I2cBus.getShortBE(buf, 0));
+        assertEquals(0x38ff, I2cBus.getShortLE(buf, 0));
+        assertEquals(0xff38, I2cBus.getUShortBE(buf, 0));
+        assertEquals(0x8001, I2cBus.getUShortLE(buf, 2));
+        final var values = new int[2];
+        I2cBus.getShortsLE(buf, 0, values, 0, 2);
+        assertEquals(0x38ff, values[0]);
+        assertEquals(-32767, values[1]);
+        I2cBus.putShortBE(buf, 0, -2);
+        assertEquals(-2, I2cBus.getShortBE(buf, 0));
+        I2cBus.putShortLE(buf, 2, 0x1234);
+        assertEquals(0x1234, I2cBus.getShortLE(buf, 2));
+    }
+
+    /**
+     * Test message descriptor packing and copy of read data to caller arrays without a device.
+     */
+    @Test
+    public void transaction() {
+        final var transaction = new I2cTransaction(3, 8);
+        // Fill arena, then reuse it so read messages see these bytes as if the device sent them
+        transaction.write(0x50, (byte) 1, (byte) 2, (byte) 3, (byte) 4);
+        transaction.clear();
+        final var dst = new byte[4];
+        transaction.write(0x50, (byte) 0x10).read(0x50, dst, 1, 3).read(0x51, 2).flags(I2C_M_IGNORE_NAK);
+        assertEquals(3, transaction.size());
+        // Address, flags, length and arena offset per message
+        final var desc = transaction.descriptors();
+        assertEquals(3 * 16, desc.remaining());
+        assertEquals(0x50, desc.getInt(0));
+        assertEquals(0, desc.getInt(4));
+        assertEquals(1, desc.getInt(8));
+        assertEquals(0, desc.getInt(12));
+        assertEquals(0x50, desc.getInt(16));
+        assertEquals(I2C_M_RD, desc.getInt(20));
+        assertEquals(3, desc.getInt(24));
+        assertEquals(1, desc.getInt(28));
+        assertEquals(0x51, desc.getInt(32));
+        assertEquals(I2C_M_RD | I2C_M_IGNORE_NAK, desc.getInt(36));
+        assertEquals(2, desc.getInt(40));
+        assertEquals(4, desc.getInt(44));
+        // Only the read with a destination is copied, at its offset
+        transaction.complete();
+        assertArrayEquals(new byte[]{0, 2, 3, 4}, dst);
+        assertEquals(0x10, transaction.rx(0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.rx(2, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.length(3));
+        // Full, arena overflow and negative length
+        assertThrows(IllegalStateException.class, () -> transaction.read(0x50, 1));
+        transaction.clear();
+        assertThrows(IllegalStateException.class, () -> transaction.read(0x50, 9));
+        assertThrows(IllegalArgumentException.class, () -> transaction.read(0x50, -1));
+        // Bad source or destination range adds no message
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.write(0x50, new byte[2], 1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.read(0x50, new byte[2], 0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.readReg8(0x50, 0, new byte[2], -1, 1));
+        assertEquals(0, transaction.size());
+    }
+
+    /**
+     * Test priority order with aging, so a low priority device still gets turns.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void schedule() throws InterruptedException {
+        final var bus = new SimulatedBus();
+        try (final var scheduler = new I2cBusScheduler(bus)) {
+            final var gate = scheduler.register((short) 0x10, 0);
+            final var high = scheduler.register((short) 0x20, 2);
+            final var low = scheduler.register((short) 0x30, 0);
+            // Nothing runs requests until started
+            assertThrows(IllegalStateException.class, () -> gate.read(0, 1));
+            scheduler.start();
+            // Hold bus thread while queues fill
+            final var first = gate.read(0, 1);
+            assertTrue(bus.entered.await(5, TimeUnit.SECONDS));
+            final List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(high.read(i * 0x10, 1));
+            }
+            for (int i = 0; i < 2; i++) {
+                futures.add(low.read(i * 0x10, 1));
+            }
+            bus.gate.countDown();
+            first.join();
+            futures.forEach(CompletableFuture::join);
+            // Low priority ages by one each turn it is passed over and runs once it ties
+            assertEquals(List.of("10:00+1", "20:00+1", "20:10+1", "30:00+1", "20:20+1", "20:30+1", "30:10+1"), bus.calls);
+        }
+    }
+
+    /**
+     * Test only contiguous reads of coalescing devices are merged.
+     *
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void coalesce() throws InterruptedException {
+        final var bus = new SimulatedBus();
+        try (final var scheduler = new I2cBusScheduler(bus, 8, 100)) {
+            final var gate = scheduler.register((short) 0x10, 1);
+            final var merged = scheduler.register((short) 0x20, 0, true);
+            final var separate = scheduler.register((short) 0x30, 0);
+            scheduler.start();
+            final var first = gate.read(0, 1);
+            assertTrue(bus.entered.await(5, TimeUnit.SECONDS));
+            // 0x10 and 0x12 are contiguous, 0x13 overlaps, 0x15 follows 0x13 and 0x16 would pass 8 bytes
+            final var a = merged.read(0x10, 2);
+            final var b = merged.read(0x12, 2);
+            final var c = merged.read(0x13, 2);
+            final var d = merged.read(0x15, 1);
+            final var e = merged.read(0x16, 8);
+            final var f = separate.read(0x10, 2);
+            final var g = separate.read(0x12, 2);
+            bus.gate.countDown();
+            first.join();
+            assertArrayEquals(new byte[]{0x10, 0x11}, a.join());
+            assertArrayEquals(new byte[]{0x12, 0x13}, b.join());
+            assertArrayEquals(new byte[]{0x13, 0x14}, c.join());
+            assertArrayEquals(new byte[]{0x15}, d.join());
+            assertEquals(8, e.join().length);
+            assertArrayEquals(new byte[]{0x10, 0x11}, f.join());
+            assertArrayEquals(new byte[]{0x12, 0x13}, g.join());
+            assertEquals(List.of("10:00+1", "20:10+4", "30:10+2", "20:13+3", "30:12+2", "20:16+8"), bus.calls);
+        }
+    }
+
+    /**
+     * Bus that returns register numbers as data and records each read. The first read waits for gate, so tests can queue requests
+     * before the scheduler runs them.
+     */
+    private static final class SimulatedBus implements I2cBlockBus {
+
+        /**
+         * Reads as address:register+length.
+         */
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        /**
+         * First read started.
+         */
+        private final CountDownLatch entered = new CountDownLatch(1);
+        /**
+         * Releases first read.
+         */
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public int readBlock(final short addr, final short reg, final byte[] dst, final int off, final int len) {
+            calls.add(String.format("%02x:%02x+%d", addr, reg, len));
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return I2C_ERROR_TRANSFER;
+            }
+            for (int i = 0; i < len; i++) {
+                dst[off + i] = (byte) (reg + i);
+            }
+            return 0;
+        }
+
+        @Override
+        public int writeBlock(final short addr, final short reg, final byte[] src, final int off, final int len) {
+            return 0;
+        }
+
+        @Override
+        public int execute(final I2cTransaction transaction) {
+            transaction.complete();
+            return 0;
+        }
+    }
 }
@@ -6,11 +6,38 @@ package com.codeferm.periphery;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_ARG;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_CLOSE;
 import static com.codeferm.periphery.Mmio.MMIO_ERROR_OPEN;
+import com.codeferm.periphery.mmio.DataRegScan;
+import com.codeferm.periphery.mmio.File;
+import com.codeferm.periphery.mmio.MmioCapture;
+import com.codeferm.periphery.mmio.MmioGpio;
+import com.codeferm.periphery.mmio.MmioRegisters;
+import com.codeferm.periphery.mmio.MmioSnapshot;
+import com.codeferm.periphery.mmio.MmioTrace;
+import com.codeferm.periphery.mmio.MmioWaveform;
+import com.codeferm.periphery.mmio.Pin;
+import com.codeferm.periphery.mmio.PinKey;
+import com.codeferm.periphery.mmio.PinTable;
+import com.codeferm.periphery.mmio.Register;
+import com.codeferm.periphery.mmio.SoftPwm;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
- * Test MMIO constants.
+ * Test MMIO constants and file backed MMIO.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -18,6 +45,32 @@ import org.junit.jupiter.api.Test;
  */
 public class MmioTest {
 
+    /**
+     * Create 4 KB regular file to map instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @return File path.
+     * @throws IOException Possible exception.
+     */
+    private static String memFile(final Path dir) throws IOException {
+        final var file = dir.resolve("mem").toFile();
+        try (final var raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(4096);
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * Map 4 KB regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @return Open MMIO at base 0.
+     * @throws IOException Possible exception.
+     */
+    private static Mmio fileMmio(final Path dir) throws IOException {
+        return new Mmio(0, 4096, memFile(dir));
+    }
+
     /**
      * Test constants.
      */
@@ -28,4 +81,336 @@ public class MmioTest {
         assertEquals(-2, MMIO_ERROR_OPEN);
         assertEquals(-3, MMIO_ERROR_CLOSE);
     }
+
+    /**
+     * Test ByteBuffer registers against JNI reads and writes using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void registers(@TempDir final Path dir) throws IOException {
+        try (final var mmio = fileMmio(dir)) {
+            final var regs = new MmioRegisters(mmio);
+            assertEquals(4096, regs.size());
+            final var value = new int[1];
+            // Buffer write seen by JNI read
+            regs.write32(0x10, 0x12345678);
+            Mmio.mmioRead32(mmio.getHandle(), 0x10, value);
+            assertEquals(0x12345678, value[0]);
+            // JNI write seen by buffer read
+            Mmio.mmioWrite32(mmio.getHandle(), 0xffc, 0x80000001);
+            assertEquals(0x80000001, regs.read32(0xffc));
+            regs.setBits(0x10, 0x80000000);
+            assertEquals(0x92345678, regs.read32(0x10));
+            regs.clearBits(0x10, 0x00000078);
+            assertEquals(0x92345600, regs.read32(0x10));
+        }
+    }
+
+    /**
+     * Test block reads and writes and snapshot diffs using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void snapshot(@TempDir final Path dir) throws IOException {
+        try (final var mmio = fileMmio(dir)) {
+            final var regs = new MmioRegisters(mmio);
+            // Block write seen by single reads
+            assertEquals(0, Mmio.mmioWrite32Block(mmio.getHandle(), 0x40, new int[]{1, 2, 3, 0x80000004}, 4));
+            assertEquals(2, regs.read32(0x44));
+            assertEquals(0x80000004, regs.read32(0x4c));
+            // Block read sees single writes
+            regs.write32(0xffc, 0x55aa55aa);
+            final var dst = new int[2];
+            assertEquals(0, Mmio.mmioRead32Block(mmio.getHandle(), 0xff8, dst, 2));
+            assertArrayEquals(new int[]{0, 0x55aa55aa}, dst);
+            // Misaligned or past end of mapping
+            assertEquals(-22, Mmio.mmioRead32Block(mmio.getHandle(), 0x42, dst, 1));
+            assertEquals(-22, Mmio.mmioRead32Block(mmio.getHandle(), 0xffc, dst, 2));
+            assertEquals(-22, Mmio.mmioWrite32Block(mmio.getHandle(), 0x1000, dst, 1));
+            assertThrows(RuntimeException.class, () -> new MmioSnapshot(mmio.getHandle(), 0xff8, 4).read());
+            final var before = new MmioSnapshot(mmio.getHandle(), 0x40, 4).read();
+            assertArrayEquals(new int[]{1, 2, 3, 0x80000004}, before.values());
+            assertEquals(0x4c, before.offset(3));
+            final var after = new MmioSnapshot(mmio.getHandle(), 0x40, 4).read();
+            // No difference
+            assertEquals(-1, after.nextDiff(before, 0));
+            // Difference in last word only
+            regs.write32(0x4c, 4);
+            after.read();
+            assertEquals(3, after.nextDiff(before, 0));
+            assertEquals(3, after.nextDiff(before, 3));
+            // Difference in first word is found from 0 and skipped after it
+            regs.write32(0x40, 0);
+            after.read();
+            assertEquals(0, after.nextDiff(before, 0));
+            assertEquals(3, after.nextDiff(before, 1));
+            assertEquals(-1, after.nextDiff(before, 4));
+        }
+    }
+
+    /**
+     * Test capture packs pin bits using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void capture(@TempDir final Path dir) throws IOException {
+        try (final var mmio = fileMmio(dir)) {
+            final var pins = List.of(
+                    Pin.builder().key(new PinKey(0, 3)).name("PA3").dataInOn(new Register("in", 0x20, 1 << 3)).build(),
+                    Pin.builder().key(new PinKey(0, 7)).name("PA7").dataInOn(new Register("in", 0x20, 1 << 7)).build(),
+                    Pin.builder().key(new PinKey(0, 9)).name("PA9").dataInOn(new Register("in", 0x20, 1 << 9)).build());
+            final var capture = new MmioCapture(mmio.getHandle(), pins);
+            final var samples = new int[4];
+            // PA3 and PA9 high
+            Mmio.mmioWrite32(mmio.getHandle(), 0x20, (1 << 3) | (1 << 9) | 1);
+            capture.sample(samples, samples.length, 0);
+            assertArrayEquals(new int[]{0b101, 0b101, 0b101, 0b101}, samples);
+            // PA7 high with interval
+            Mmio.mmioWrite32(mmio.getHandle(), 0x20, 1 << 7);
+            capture.sample(samples, 2, 1000);
+            assertEquals(0b010, samples[0]);
+            assertEquals(0b010, samples[1]);
+        }
+    }
+
+    /**
+     * Test waveform final register state using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void waveform(@TempDir final Path dir) throws IOException {
+        try (final var mmio = fileMmio(dir)) {
+            // Same on and off register uses OR and AND
+            final var same = Pin.builder().key(new PinKey(0, 4)).name("PA4").dataOutOn(new Register("out", 0x10, 1 << 4)).
+                    dataOutOff(new Register("out", 0x10, ~(1 << 4))).build();
+            // Separate set and clear registers are written
+            final var separate = Pin.builder().key(new PinKey(0, 5)).name("GPIO5").dataOutOn(new Register("set", 0x1c, 1 << 5)).
+                    dataOutOff(new Register("clr", 0x28, 1 << 5)).build();
+            Mmio.mmioWrite32(mmio.getHandle(), 0x10, 0x01);
+            final var waveform = new MmioWaveform(mmio.getHandle()).pulse(same, 100, 100).on(same, 100).on(separate, 0);
+            assertEquals(4, waveform.size());
+            waveform.play(3);
+            final var regs = new MmioRegisters(mmio);
+            assertEquals(0x11, regs.read32(0x10));
+            assertEquals(1 << 5, regs.read32(0x1c));
+            assertEquals(0, regs.read32(0x28));
+            waveform.clear();
+            waveform.off(same, 0).off(separate, 0).play();
+            assertEquals(0x01, regs.read32(0x10));
+            assertEquals(1 << 5, regs.read32(0x28));
+        }
+    }
+
+    /**
+     * Test software PWM full on and off using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void softPwm(@TempDir final Path dir) throws IOException, InterruptedException {
+        try (final var mmio = fileMmio(dir)) {
+            final var pin = Pin.builder().key(new PinKey(0, 2)).name("PA2").dataOutOn(new Register("out", 0x10, 1 << 2)).
+                    dataOutOff(new Register("out", 0x10, ~(1 << 2))).build();
+            final var regs = new MmioRegisters(mmio);
+            // 10 us tick, 100 ticks per period = 1 KHz
+            final var pwm = new SoftPwm(mmio.getHandle(), List.of(pin), 10000, 100);
+            try (pwm) {
+                pwm.setDuty(0, 200);
+                assertEquals(100, pwm.getDuty(0));
+                // Wait up to 1 second for next period to latch duty cycle
+                for (int i = 0; i < 100 && regs.read32(0x10) == 0; i++) {
+                    Thread.sleep(10);
+                }
+                assertEquals(1 << 2, regs.read32(0x10));
+            }
+            // Channels are left off
+            assertEquals(0, regs.read32(0x10));
+            // Duty cycles are freed
+            assertThrows(IllegalStateException.class, () -> pwm.setDuty(0, 50));
+        }
+    }
+
+    /**
+     * Test register watch trace header, replay, change counts and summary using a regular file instead of /dev/mem.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void trace(@TempDir final Path dir) throws IOException, InterruptedException {
+        final var path = dir.resolve("watch.trc");
+        try (final var mmio = fileMmio(dir)) {
+            final var regs = new MmioRegisters(mmio);
+            regs.write32(0x100, 0x11);
+            regs.write32(0x104, 1);
+            // Change registers while watch runs
+            final var writer = Thread.ofPlatform().start(() -> {
+                try {
+                    Thread.sleep(50);
+                    regs.write32(0x104, 5);
+                    Thread.sleep(50);
+                    regs.write32(0x104, 7);
+                    regs.write32(0x108, 3);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            // 4 words at 1 ms for 300 ms
+            final var trace = MmioTrace.record(mmio.getHandle(), 0x100, 4, 1000000, 300000000, path, 1024);
+            writer.join();
+            // 64 byte header
+            final var header = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.nativeOrder());
+            final var magic = new byte[8];
+            header.get(0, magic);
+            assertEquals("JUIOTRCE", new String(magic, StandardCharsets.US_ASCII));
+            assertEquals(1, header.getInt(8));
+            assertEquals(16, header.getInt(28));
+            assertTrue(header.capacity() >= 64 + trace.size() * 16);
+            assertEquals(4, trace.words());
+            assertEquals(0, trace.base());
+            assertEquals(0x100, trace.startOffset());
+            assertEquals(1000000, trace.intervalNs());
+            assertTrue(trace.samples() > 1);
+            assertTrue(trace.elapsedNs() >= 300000000);
+            // Initial values, then 3 changes
+            assertEquals(7, trace.size());
+            assertEquals(0, trace.timestamp(0));
+            assertEquals(0x104, trace.offset(4));
+            assertEquals(5, trace.value(4));
+            assertTrue(trace.timestamp(4) > 0);
+            final var values = new int[4];
+            assertEquals(4, trace.replay(values, 0));
+            assertArrayEquals(new int[]{0x11, 1, 0, 0}, values);
+            assertEquals(5, trace.replay(values, trace.timestamp(4)));
+            assertArrayEquals(new int[]{0x11, 5, 0, 0}, values);
+            assertEquals(7, trace.replay(values, Long.MAX_VALUE));
+            assertArrayEquals(new int[]{0x11, 7, 3, 0}, values);
+            assertArrayEquals(new int[]{0, 2, 1, 0}, trace.changes());
+            final var summary = trace.summary();
+            assertTrue(summary.startsWith("Base 0x00000000, offset 0x00000100, 4 words"));
+            assertTrue(summary.contains("Offset 0x00000104: 2 changes"));
+            assertTrue(summary.contains("Offset 0x00000108: 1 changes"));
+            assertFalse(summary.contains("Offset 0x00000100:"));
+            // Reopen mapped file
+            assertEquals(trace.size(), MmioTrace.open(path).size());
+        }
+    }
+
+    /**
+     * Test binary pin table matches property pin map and rejects long names.
+     *
+     * @param dir Temporary directory.
+     */
+    @Test
+    public void pinTable(@TempDir final Path dir) {
+        final var file = new File();
+        final var pinMap = file.loadPinMap("duo-map.properties");
+        final var path = dir.resolve("duo-map.bin");
+        PinTable.write(pinMap, file, path);
+        final var table = PinTable.load(path);
+        assertEquals(pinMap.size(), table.size());
+        assertEquals(pinMap, table.toPinMap());
+        assertEquals(file.memPath(), table.memPath());
+        assertEquals(file.chips().get(1), table.chipBase(1));
+        final var record = table.find(0, 4);
+        assertEquals(0x10, table.offset(record, PinTable.DATA_OUT_ON));
+        assertEquals(0xffffffef, table.mask(record, PinTable.DATA_OUT_OFF));
+        assertEquals(-1, table.offset(record, PinTable.DIR_IN));
+        assertEquals(-1, table.find(9, 9));
+        // Names that do not fit are rejected, not truncated
+        pinMap.get(new PinKey(0, 4)).name("PIN_NAME_TOO_LONG");
+        final var longPath = dir.resolve("long.bin");
+        assertThrows(IllegalArgumentException.class, () -> PinTable.write(pinMap, file, longPath));
+        assertFalse(longPath.toFile().exists());
+    }
+
+    /**
+     * Test MmioGpio maps pin table chips using a regular file instead of /dev/mem and refuses lines once closed.
+     *
+     * @param dir Temporary directory.
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void mmioGpio(@TempDir final Path dir) throws IOException {
+        final var out = Pin.builder().key(new PinKey(0, 4)).groupName("PA").name("PA4").dataInOn(new Register("in", 0x10, 1 << 4)).
+                dataOutOn(new Register("out", 0x10, 1 << 4)).dataOutOff(new Register("out", 0x10, ~(1 << 4))).build();
+        final var in = Pin.builder().key(new PinKey(0, 5)).groupName("PA").name("PA5").dataInOn(new Register("in", 0x10, 1 << 5)).
+                build();
+        final var file = File.builder().gpioDev(List.of(0)).chips(List.of(0L)).mmioSize(List.of(4096L)).memPath(memFile(dir)).
+                build();
+        final var path = dir.resolve("map.bin");
+        PinTable.write(Map.of(out.key(), out, in.key(), in), file, path);
+        final var mmioGpio = new MmioGpio(path.toString());
+        // Only lines with a data out register on a mapped chip use MMIO
+        assertTrue(mmioGpio.isMapped(0, 4));
+        assertFalse(mmioGpio.isMapped(0, 5));
+        assertFalse(mmioGpio.isMapped(1, 4));
+        // Chips are unmapped and no line can be opened on them
+        mmioGpio.close();
+        assertFalse(mmioGpio.isMapped(0, 4));
+        assertThrows(IllegalStateException.class, () -> mmioGpio.open(0, 4, Gpio.GPIO_DIR_OUT));
+        mmioGpio.close();
+    }
+
+    /**
+     * Test direction field masks cover whole mux fields.
+     */
+    @Test
+    public void fieldMask() {
+        // Raspberry Pi GPFSEL line 9, input 000 and output 001
+        assertEquals(0b111 << 27, MmioGpio.fieldMask(1 << 27, 3));
+        // Allwinner CFG line 7, input 0000 and output 0001
+        assertEquals(0xf0000000, MmioGpio.fieldMask(1 << 28, 4));
+        // One bit direction register
+        assertEquals(1 << 5, MmioGpio.fieldMask(1 << 5, 1));
+        // Unknown width or width that cannot hold changed bits
+        assertEquals(0b100, MmioGpio.fieldMask(0b100, 0));
+        assertEquals(0b110, MmioGpio.fieldMask(0b110, 2));
+    }
+
+    /**
+     * Test single pass data register scan decodes pin owners of simulated register changes.
+     */
+    @Test
+    public void dataRegScan() {
+        // Pin 0 and 1 on word 0, pins 2 and 3 on word 1, pin 4 has no data bit
+        final int[][] owner = {{0, 3}, {0, 7}, {1, 0}, {1, 31}};
+        final var scan = new DataRegScan(5, 2);
+        assertEquals(3, scan.passes());
+        // Codes 1, 3 and 5 have bit 0 set
+        assertEquals(0b10101, scan.values(0));
+        final var base = new int[]{0x100, 0};
+        for (int pass = 0; pass < scan.passes(); pass++) {
+            final var values = base.clone();
+            final var lines = scan.values(pass);
+            for (int i = 0; i < owner.length; i++) {
+                if ((lines >> i & 1) != 0) {
+                    values[owner[i][0]] ^= 1 << owner[i][1];
+                }
+            }
+            // Bit that changes every pass has code 7, which no pin has
+            values[0] ^= 1 << 20;
+            scan.record(pass, base, values);
+        }
+        assertArrayEquals(new int[]{1 << 3, 1 << 7, 0, 0, 0}, scan.masks(0));
+        assertArrayEquals(new int[]{0, 0, 1, 1 << 31, 0}, scan.masks(1));
+        assertEquals(1 << 20, scan.unknown(0));
+        assertEquals(0, scan.unknown(1));
+        // 64 pins need 7 passes and only pin 63 has code bit 6
+        final var full = new DataRegScan(64, 1);
+        assertEquals(7, full.passes());
+        assertEquals(1L << 63, full.values(6));
+        assertThrows(IllegalArgumentException.class, () -> new DataRegScan(65, 1));
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) Steven P. Goldsmith. All rights reserved.
+ */
+package com.codeferm.periphery;
+
+import com.codeferm.periphery.device.ModbusMaster;
+import com.codeferm.periphery.device.ModbusPoller;
+import com.codeferm.periphery.device.SerialChannel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test Modbus RTU master against a slave simulator on a pseudo-terminal pair.
+ *
+ * @author Steven P. Goldsmith
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ModbusTest {
+
+    /**
+     * Test CRC16 against known frame.
+     */
+    @Test
+    public void crc() {
+        assertEquals(0xcdc5, ModbusMaster.crc16(new byte[]{1, 3, 0, 0, 0, 10}, 0, 6));
+        assertEquals(1750, ModbusMaster.frameGapUs(115200));
+        assertEquals(4011, ModbusMaster.frameGapUs(9600));
+    }
+
+    /**
+     * Test reads, writes, exceptions, echo checks and poll merging.
+     *
+     * @throws IOException Possible exception.
+     * @throws InterruptedException Possible exception.
+     */
+    @Test
+    public void master() throws IOException, InterruptedException {
+        try (final var simulator = new Simulator(); final var master = new ModbusMaster(simulator.channel.ptyName(), 115200,
+                500)) {
+            // Spans two requests
+            final var regs = new short[200];
+            master.readHoldingRegisters(1, 0, regs, 0, regs.length);
+            for (int i = 0; i < regs.length; i++) {
+                assertEquals(i, regs[i]);
+            }
+            master.writeSingleRegister(2, 5, 0x1234);
+            master.writeMultipleRegisters(2, 10, new short[]{7, 8, 9}, 0, 3);
+            master.readHoldingRegisters(2, 5, regs, 0, 8);
+            assertEquals(0x1234, regs[0]);
+            assertEquals(9, regs[7]);
+            // Illegal data address
+            assertTrue(assertThrows(RuntimeException.class, () -> master.readHoldingRegisters(1, 190, regs, 0, 20)).getMessage()
+                    .endsWith("exception 2"));
+            // Wrong echo of written register
+            simulator.badEcho = true;
+            assertTrue(assertThrows(RuntimeException.class, () -> master.writeSingleRegister(2, 5, 0x1234)).getMessage()
+                    .contains("echoed address 6"));
+            simulator.badEcho = false;
+            // No such slave
+            master.setTimeoutMs(50);
+            assertThrows(RuntimeException.class, () -> master.readHoldingRegisters(9, 0, regs, 0, 1));
+            master.setTimeoutMs(500);
+            // Broadcast has no response to read
+            assertThrows(IllegalArgumentException.class, () -> master.readInputRegisters(0, 0, regs, 0, 1));
+            // Ranges on slave 1 merge into one read, slave 2 needs its own
+            final var latch = new CountDownLatch(3);
+            try (final var poller = new ModbusPoller(master, 4)) {
+                final ModbusPoller.Handler handler = (slave, start, values, off, count) -> {
+                    if (values[off] == (slave == 1 ? start : start == 5 ? 0x1234 : start)) {
+                        latch.countDown();
+                    }
+                };
+                poller.add(1, ModbusMaster.READ_HOLDING_REGISTERS, 0, 10, 60000, handler);
+                poller.add(1, ModbusMaster.READ_HOLDING_REGISTERS, 12, 8, 60000, handler);
+                poller.add(2, ModbusMaster.READ_HOLDING_REGISTERS, 5, 2, 60000, handler);
+                poller.start();
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+                assertEquals(2, poller.getRequests());
+            }
+        }
+    }
+
+    /**
+     * Modbus RTU slaves 1 and 2 with 200 holding registers each, initialized to their address.
+     */
+    private static final class Simulator implements AutoCloseable {
+
+        /**
+         * pty master.
+         */
+        private final SerialChannel channel = SerialChannel.pty();
+        /**
+         * Registers by slave.
+         */
+        private final short[][] registers = new short[3][200];
+        /**
+         * Request and response.
+         */
+        private final ByteBuffer frame = ByteBuffer.allocate(256);
+        /**
+         * Slave thread.
+         */
+        private final Thread thread;
+        /**
+         * Echo the register after the one written.
+         */
+        private volatile boolean badEcho;
+
+        /**
+         * Start slave thread.
+         */
+        private Simulator() {
+            for (final var regs : registers) {
+                for (int i = 0; i < regs.length; i++) {
+                    regs[i] = (short) i;
+                }
+            }
+            thread = Thread.ofPlatform().daemon().start(() -> {
+                try {
+                    while (true) {
+                        serve();
+                    }
+                } catch (IOException e) {
+                    // Channel closed
+                }
+            });
+        }
+
+        /**
+         * Read len bytes into frame.
+         *
+         * @param len Byte count.
+         * @throws IOException If channel closed.
+         */
+        private void fill(final int len) throws IOException {
+            frame.limit(frame.position() + len);
+            while (frame.hasRemaining()) {
+                if (channel.read(frame) < 0) {
+                    throw new IOException("End of stream");
+                }
+            }
+        }
+
+        /**
+         * Answer one request.
+         *
+         * @throws IOException If channel closed.
+         */
+        private void serve() throws IOException {
+            frame.clear();
+            fill(8);
+            final var slave = frame.get(0);
+            final var function = frame.get(1);
+            final var address = frame.getShort(2) & 0xffff;
+            final var value = frame.getShort(4) & 0xffff;
+            if (function == ModbusMaster.WRITE_MULTIPLE_REGISTERS) {
+                fill((frame.get(6) & 0xff) + 1);
+            }
+            if (ModbusMaster.crc16(frame, 0, frame.position()) != 0 || slave < 1 || slave > 2) {
+                return;
+            }
+            final var regs = registers[slave];
+            final var count = function == ModbusMaster.WRITE_SINGLE_REGISTER ? 1 : value;
+            frame.clear().put(slave).put(function);
+            if (address + count > regs.length) {
+                frame.put(1, (byte) (function | 0x80)).put((byte) 2);
+            } else if (function == ModbusMaster.READ_HOLDING_REGISTERS) {
+                frame.put((byte) (count * 2));
+                for (int i = 0; i < count; i++) {
+                    frame.putShort(regs[address + i]);
+                }
+            } else {
+                if (function == ModbusMaster.WRITE_SINGLE_REGISTER) {
+                    regs[address] = (short) value;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        regs[address + i] = frame.getShort(7 + i * 2);
+                    }
+                }
+                frame.putShort((short) (badEcho ? address + 1 : address)).putShort((short) value);
+            }
+            final var crc = ModbusMaster.crc16(frame, 0, frame.position());
+            frame.put((byte) crc).put((byte) (crc >>> 8)).flip();
+            channel.write(frame);
+            channel.flush();
+        }
+
+        /**
+         * Close pty, which stops slave thread.
+         *
+         * @throws IOException Possible exception.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -12,11 +12,26 @@ import static com.codeferm.periphery.Serial.SERIAL_ERROR_CONFIGURE;
 import static com.codeferm.periphery.Serial.SERIAL_ERROR_IO;
 import static com.codeferm.periphery.Serial.SERIAL_ERROR_OPEN;
 import static com.codeferm.periphery.Serial.SERIAL_ERROR_QUERY;
+import com.codeferm.periphery.device.FrameDecoder;
+import com.codeferm.periphery.device.FrameDecoders;
+import com.codeferm.periphery.device.FrameReader;
+import com.codeferm.periphery.device.SerialChannel;
+import com.codeferm.periphery.device.Uart;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test serial constants.
+ * Test serial constants, pty loopback and frame decoding.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -41,4 +56,99 @@ public class SerialTest {
         assertEquals(1, PARITY_ODD);        
         assertEquals(2, PARITY_EVEN);        
     }
+
+    /**
+     * Test SerialChannel against Uart over a pseudo-terminal pair.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void channel() throws IOException {
+        try (final var channel = SerialChannel.pty(); final var uart = new Uart(channel.ptyName(), 115200)) {
+            final var tx = new byte[1000];
+            for (int i = 0; i < tx.length; i++) {
+                tx[i] = (byte) i;
+            }
+            // Uart to channel
+            uart.write(tx);
+            final var rx = ByteBuffer.allocate(tx.length);
+            while (rx.hasRemaining()) {
+                assertEquals(true, channel.read(rx, 1000) > 0);
+            }
+            assertArrayEquals(tx, rx.array());
+            // Coalesced writes from channel to Uart
+            for (int i = 0; i < tx.length; i += 100) {
+                channel.write(ByteBuffer.wrap(tx, i, 100));
+            }
+            channel.flush();
+            final var back = new byte[tx.length];
+            assertEquals(tx.length, uart.read(back, 1000));
+            assertArrayEquals(tx, back);
+            // In place scan
+            uart.write(new byte[]{1, 2, 3});
+            final var view = channel.peek(1000);
+            assertEquals(1, view.get(view.position()));
+            channel.consume(view.remaining());
+            // Interrupted read closes channel
+            Thread.currentThread().interrupt();
+            assertThrows(ClosedByInterruptException.class, () -> channel.read(ByteBuffer.allocate(1), 1000));
+            assertTrue(Thread.interrupted());
+            assertFalse(channel.isOpen());
+        }
+    }
+
+    /**
+     * Decode stream fed in small chunks, so frames span reads.
+     *
+     * @param decoder Frame decoder.
+     * @param stream Encoded stream.
+     * @param frames Expected frames.
+     * @return Reader for error count.
+     * @throws IOException Possible exception.
+     */
+    private FrameReader decode(final FrameDecoder decoder, final byte[] stream, final byte[]... frames) throws IOException {
+        final var in = ByteBuffer.wrap(stream);
+        final var reader = new FrameReader((dst, timeoutMs) -> {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            final var len = Math.min(Math.min(7, in.remaining()), dst.remaining());
+            dst.put(in.slice(in.position(), len));
+            in.position(in.position() + len);
+            return len;
+        }, decoder, 64);
+        for (final var expected : frames) {
+            final var frame = reader.next(0);
+            final var actual = new byte[frame.remaining()];
+            frame.get(actual);
+            assertArrayEquals(expected, actual);
+        }
+        assertNull(reader.next(0));
+        return reader;
+    }
+
+    /**
+     * Test frame decoders.
+     *
+     * @throws IOException Possible exception.
+     */
+    @Test
+    public void frames() throws IOException {
+        decode(FrameDecoders.line(), "$GPGGA,1\r\n\n$GPRMC,22\r\n".getBytes(StandardCharsets.US_ASCII), "$GPGGA,1".getBytes(
+                StandardCharsets.US_ASCII), new byte[0], "$GPRMC,22".getBytes(StandardCharsets.US_ASCII));
+        decode(FrameDecoders.slip(), new byte[]{(byte) 0xc0, 1, (byte) 0xdb, (byte) 0xdc, 2, (byte) 0xdb, (byte) 0xdd, (byte) 0xc0,
+            3, (byte) 0xc0}, new byte[]{1, (byte) 0xc0, 2, (byte) 0xdb}, new byte[]{3});
+        decode(FrameDecoders.cobs(), new byte[]{3, 0x11, 0x22, 2, 0x33, 0, 1, 1, 0}, new byte[]{0x11, 0x22, 0, 0x33}, new byte[]{0});
+        assertEquals(1, decode(FrameDecoders.slip(), new byte[]{1, (byte) 0xdb, 5, (byte) 0xc0, 4, (byte) 0xc0}, new byte[]{4})
+                .errors());
+        decode(FrameDecoders.lengthPrefixed(2, ByteOrder.BIG_ENDIAN, 32), new byte[]{0, 3, 1, 2, 3, 0, 0, 0, 1, 9}, new byte[]{1, 2,
+            3}, new byte[0], new byte[]{9});
+        // Line longer than buffer is dropped
+        final var longLine = new byte[100];
+        longLine[99] = '\n';
+        final var reader = decode(FrameDecoders.line(), longLine);
+        assertEquals(1, reader.errors());
+        // Only -1 is end of stream, other negative counts break the source contract
+        assertThrows(IOException.class, () -> new FrameReader((dst, timeoutMs) -> -5, FrameDecoders.line(), 64).next(0));
+    }
 }
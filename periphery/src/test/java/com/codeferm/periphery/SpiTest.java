@@ -11,11 +11,14 @@ import static com.codeferm.periphery.Spi.SPI_ERROR_CONFIGURE;
 import static com.codeferm.periphery.Spi.SPI_ERROR_OPEN;
 import static com.codeferm.periphery.Spi.SPI_ERROR_QUERY;
 import static com.codeferm.periphery.Spi.SPI_ERROR_TRANSFER;
+import com.codeferm.periphery.device.SpiTransaction;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test SPI constants.
+ * Test SPI constants and transaction packing.
  *
  * @author Steven P. Goldsmith
  * @version 1.0.0
@@ -39,4 +42,61 @@ public class SpiTest {
         assertEquals(0, MSB_FIRST);
         assertEquals(1, LSB_FIRST);
     }
+
+    /**
+     * Test segment packing, per-segment modifiers, reuse and limits without a device.
+     */
+    @Test
+    public void transaction() {
+        final var transaction = new SpiTransaction(3, 16);
+        // Command, then full duplex parameters and a read with modifiers on the last segment
+        transaction.write((byte) 0x9f).transfer(new byte[]{1, 2, 3}, 0, 3).read(4).speed(1000000).bitsPerWord(8).delayUsecs(10)
+                .csChange(true);
+        assertEquals(3, transaction.size());
+        assertEquals(1, transaction.length(0));
+        assertEquals(3, transaction.length(1));
+        assertEquals(4, transaction.length(2));
+        final var xfers = transaction.transfers();
+        assertEquals(3 * 32, xfers.remaining());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(0, xfers.getInt(i * 32 + 20));
+            assertEquals(0, xfers.getLong(i * 32 + 24));
+        }
+        // Speed, delay, bits per word and cs_change of last segment only
+        assertEquals(1000000, xfers.getInt(64 + 20));
+        assertEquals(10, xfers.getShort(64 + 24));
+        assertEquals(8, xfers.get(64 + 26));
+        assertEquals(1, xfers.get(64 + 27));
+        // Write has no rx buffer and read has no tx buffer, segments are packed in the arena
+        assertEquals(0, xfers.getLong(8));
+        assertEquals(0, xfers.getLong(64));
+        assertEquals(xfers.getLong(0) + 1, xfers.getLong(32));
+        assertEquals(xfers.getLong(32), xfers.getLong(40));
+        assertEquals(xfers.getLong(32) + 3, xfers.getLong(72));
+        // Full duplex segment reads back what was sent until the device overwrites it
+        final var rx = new byte[3];
+        assertEquals(3, transaction.rx(1, rx, 0));
+        assertArrayEquals(new byte[]{1, 2, 3}, rx);
+        assertEquals(2, transaction.rx(1, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.rx(1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.rx(3, rx, 0));
+        assertThrows(IllegalStateException.class, () -> transaction.read(1));
+        // Reuse clears segments and arena, modifiers are reset
+        transaction.clear();
+        assertEquals(0, transaction.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.length(0));
+        assertThrows(IllegalStateException.class, () -> transaction.speed(1));
+        transaction.read(16);
+        assertEquals(0, transaction.transfers().getInt(20));
+        assertEquals(0, transaction.transfers().getLong(24));
+        // Arena overflow and negative length
+        assertThrows(IllegalStateException.class, () -> transaction.read(1));
+        assertThrows(IllegalArgumentException.class, () -> transaction.clear().read(-1));
+        assertEquals(0, transaction.size());
+        // Bad source range adds no segment
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.write(new byte[2], 1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> transaction.transfer(new byte[2], -1, 1));
+        assertEquals(0, transaction.size());
+        assertThrows(IllegalArgumentException.class, () -> new SpiTransaction(0, 16));
+    }
 }
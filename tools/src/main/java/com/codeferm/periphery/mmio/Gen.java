@@ -6,14 +6,25 @@ package com.codeferm.periphery.mmio;
 import static com.codeferm.periphery.Common.cString;
 import com.codeferm.periphery.Gpio;
 import static com.codeferm.periphery.Gpio.GPIO_BIAS_DEFAULT;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_DISABLE;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_PULL_DOWN;
+import static com.codeferm.periphery.Gpio.GPIO_BIAS_PULL_UP;
+import static com.codeferm.periphery.Gpio.GPIO_DIR_IN;
 import static com.codeferm.periphery.Gpio.GPIO_DIR_OUT;
 import static com.codeferm.periphery.Gpio.GPIO_DRIVE_DEFAULT;
 import static com.codeferm.periphery.Gpio.GPIO_EDGE_NONE;
 import static com.codeferm.periphery.Gpio.GPIO_EVENT_CLOCK_REALTIME;
+import com.codeferm.periphery.GpioLineGroup;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_LINES_MAX;
+import static com.codeferm.periphery.GpioLineGroup.GPIO_V2_LINE_FLAG_OUTPUT;
 import com.codeferm.periphery.Mmio;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine;
@@ -45,6 +56,17 @@ public class Gen implements Callable<Integer> {
      */
     @CommandLine.Option(names = {"-o", "--out"}, description = "Output property file name, ${DEFAULT-VALUE} by default.")
     private String outFileName = "out.properties";
+    /**
+     * Binary pin table file.
+     */
+    @CommandLine.Option(names = {"-b", "--bin"}, description = "Output binary pin table file name, ${DEFAULT-VALUE} by default.")
+    private String binFileName = "out.bin";
+    /**
+     * Single pass scan.
+     */
+    @CommandLine.Option(names = {"-s", "--scan"}, description = "Single pass scan of up to 64 pins per chip, ${DEFAULT-VALUE} by "
+            + "default.")
+    private boolean scan = false;
 
     /**
      * Return values from all registers.
@@ -52,37 +74,28 @@ public class Gen implements Callable<Integer> {
      * @param mmioHandle MMIO handles.
      * @param groupChip Chip group is on.
      * @param dataOffset Data register offsets in chip.
-     * @return List of register values.
+     * @return Register values.
      */
-    public List<Integer> getRegValues(final List<Long> mmioHandle, final List<Integer> groupChip, final List<Integer> dataOffset) {
-        final var list = new ArrayList<Integer>();
+    public int[] getRegValues(final List<Long> mmioHandle, final List<Integer> groupChip, final List<Integer> dataOffset) {
+        final var values = new int[groupChip.size()];
         final var value = new int[1];
         // Read all groups
         for (int chip = 0; chip < groupChip.size(); chip++) {
             Mmio.mmioRead32(mmioHandle.get(groupChip.get(chip)), dataOffset.get(chip), value);
-            list.add(value[0]);
+            values[chip] = value[0];
         }
-        return list;
+        return values;
     }
 
     /**
-     * Compare list values and return index where difference is found. Filter is used to select on desired register name.
+     * Compare register values and return index where difference is found.
      *
-     * @param list1 First list.
-     * @param list2 Second list.
-     * @return Index of difference.
+     * @param list1 First values.
+     * @param list2 Second values.
+     * @return Index of difference or -1 if none.
      */
-    public int listDiff(final List<Integer> list1, final List<Integer> list2) {
-        var i = 0;
-        // Look for difference based on filter and exit on first instance
-        while (i < list1.size() && list1.get(i).equals(list2.get(i))) {
-            i++;
-        }
-        // No difference
-        if (i == list1.size()) {
-            i = -1;
-        }
-        return i;
+    public int listDiff(final int[] list1, final int[] list2) {
+        return MmioSnapshot.nextDiff(list1, list2, 0);
     }
 
     /**
@@ -102,6 +115,31 @@ public class Gen implements Callable<Integer> {
         return diff;
     }
 
+    /**
+     * Set data registers of group in pin DTO.
+     *
+     * @param pin Pin DTO.
+     * @param group Group index.
+     * @param mask Pin bit mask.
+     * @param groupName Pin group names.
+     * @param dataInOnOffset Data register in on offsets.
+     * @param dataInOffOffset Data register in 0ff offsets.
+     * @param dataOutOnOffset Data register out on offsets.
+     * @param dataOutOffOffset Data register out off offsets.
+     */
+    public void setPinRegs(final Pin pin, final int group, final int mask, final List<String> groupName,
+            final List<Integer> dataInOnOffset, final List<Integer> dataInOffOffset, final List<Integer> dataOutOnOffset,
+            final List<Integer> dataOutOffOffset) {
+        pin.groupName(groupName.get(group)).dataInOn(new Register("IN_ON", dataInOnOffset.get(group % dataInOnOffset.size()),
+                mask)).dataInOff(new Register("IN_OFF", dataInOffOffset.get(group % dataInOffOffset.size()), mask)).dataOutOn(
+                new Register("OUT_ON", dataOutOnOffset.get(group % dataOutOnOffset.size()), mask)).dataOutOff(new Register(
+                "OUT_OFF", dataOutOffOffset.get(group % dataOutOffOffset.size()), mask));
+        // If data out uses same register for on/off then generate AND mask for off.
+        if (pin.dataOutOn().offset().equals(pin.dataOutOff().offset())) {
+            pin.dataOutOff().mask(pin.dataOutOff().mask() ^ 0xffffffff);
+        }
+    }
+
     /**
      * Set data register info in pin DTO.
      *
@@ -138,16 +176,8 @@ public class Gen implements Callable<Integer> {
             final var reg = listDiff(list1, list2);
             // Make sure a delta is detected
             if (reg >= 0) {
-                pin.groupName(groupName.get(reg)).dataInOn(new Register("IN_ON", dataInOnOffset.get(reg % dataInOnOffset.
-                        size()), valueDiff(list1.get(reg), list2.get(reg)))).dataInOff(new Register("IN_OFF", dataInOffOffset.
-                        get(reg % dataInOffOffset.size()), valueDiff(list1.get(reg), list2.get(reg)))).dataOutOn(new Register(
-                        "OUT_ON", dataOutOnOffset.get(reg % dataOutOnOffset.size()), valueDiff(list1.get(reg), list2.get(reg)))).
-                        dataOutOff(new Register("OUT_OFF", dataOutOffOffset.get(reg % dataOutOffOffset.size()), valueDiff(list1.
-                                get(reg), list2.get(reg))));
-                // If data out uses same register for on/off then generate AND mask for off.
-                if (pin.dataOutOn().offset().equals(pin.dataOutOff().offset())) {
-                    pin.dataOutOff().mask(pin.dataOutOff().mask() ^ 0xffffffff);
-                }
+                setPinRegs(pin, reg, valueDiff(list1[reg], list2[reg]), groupName, dataInOnOffset, dataInOffOffset,
+                        dataOutOnOffset, dataOutOffOffset);
             } else {
                 log.warn(String.format("Chip %d Pin %d data register change not detected", pin.key().chip(),
                         pin.key().pin()));
@@ -157,6 +187,156 @@ public class Gen implements Callable<Integer> {
         }
     }
 
+    /**
+     * Detect data registers of up to 64 pins on one chip in a single pass. All pins are requested as one line group and the chip's
+     * group registers are read with one block read per pass. DataRegScan picks the lines driven in each pass and decodes which pin
+     * owns each changed register bit.
+     *
+     * @param pins Pins on chip (1 to 64).
+     * @param mmioHandle MMIO handle of chip.
+     * @param chip Chip index.
+     * @param file Parsed input file.
+     * @return Pins not detected.
+     */
+    public List<Pin> scanDataReg(final List<Pin> pins, final long mmioHandle, final int chip, final File file) {
+        final var dataOffset = file.useInputDataReg() ? file.dataInOnOffset() : file.dataOutOnOffset();
+        final var groups = new ArrayList<Integer>();
+        var min = Integer.MAX_VALUE;
+        var max = -1;
+        for (int g = 0; g < file.groupChip().size(); g++) {
+            if (file.groupChip().get(g) == chip) {
+                final var offset = dataOffset.get(g % dataOffset.size());
+                groups.add(g);
+                min = Math.min(min, offset);
+                max = Math.max(max, offset);
+            }
+        }
+        if (groups.isEmpty()) {
+            return pins;
+        }
+        final var count = pins.size();
+        final var base = new MmioSnapshot(mmioHandle, min, (max - min) / 4 + 1);
+        final var snapshot = new MmioSnapshot(mmioHandle, min, base.size());
+        final var scan = new DataRegScan(count, base.size());
+        final var lines = pins.stream().mapToInt(pin -> pin.key().pin()).toArray();
+        try (final var group = new GpioLineGroup(String.format("/dev/gpiochip%d", file.gpioDev().get(chip)), lines,
+                GPIO_V2_LINE_FLAG_OUTPUT, 0, Gen.class.getSimpleName())) {
+            base.read();
+            for (int pass = 0; pass < scan.passes(); pass++) {
+                group.setValues(scan.values(pass));
+                scan.record(pass, base.values(), snapshot.read().values());
+            }
+            group.setValues(0);
+        } catch (RuntimeException e) {
+            log.warn(String.format("Chip %d scan failed, using pin by pin detection: %s", file.gpioDev().get(chip), e.
+                    getMessage()));
+            return pins;
+        }
+        // Decode owner of each changed bit
+        final var masks = new int[count];
+        final var pinGroup = new int[count];
+        Arrays.fill(pinGroup, -1);
+        final var done = new boolean[base.size()];
+        for (final var g : groups) {
+            final var word = (dataOffset.get(g % dataOffset.size()) - min) / 4;
+            if (!done[word]) {
+                done[word] = true;
+                final var unknown = scan.unknown(word);
+                if (unknown != 0) {
+                    log.warn(String.format("Offset 0x%02x bits 0x%08x changed with unknown code", base.offset(word), unknown));
+                }
+                final var wordMasks = scan.masks(word);
+                for (int i = 0; i < count; i++) {
+                    if (wordMasks[i] != 0) {
+                        pinGroup[i] = g;
+                        masks[i] |= wordMasks[i];
+                    }
+                }
+            }
+        }
+        final var undetected = new ArrayList<Pin>();
+        for (int i = 0; i < count; i++) {
+            if (pinGroup[i] >= 0) {
+                setPinRegs(pins.get(i), pinGroup[i], masks[i], file.groupName(), file.dataInOnOffset(), file.dataInOffOffset(),
+                        file.dataOutOnOffset(), file.dataOutOffOffset());
+            } else {
+                undetected.add(pins.get(i));
+            }
+        }
+        return undetected;
+    }
+
+    /**
+     * Return index of first word that differs and is not excluded.
+     *
+     * @param values1 First values.
+     * @param values2 Second values.
+     * @param exclude Excluded register offsets.
+     * @return Index of difference or -1 if none.
+     */
+    public int configDiff(final int[] values1, final int[] values2, final Set<Integer> exclude) {
+        var i = MmioSnapshot.nextDiff(values1, values2, 0);
+        while (i >= 0 && exclude.contains(i * 4)) {
+            i = MmioSnapshot.nextDiff(values1, values2, i + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Set direction and bias register info in pin DTO. The whole chip is snapshot before and after each change and data
+     * registers are excluded, since pin level can follow direction and pull changes.
+     *
+     * @param pin Pin DTO.
+     * @param mmioHandle MMIO handle of pin's chip.
+     * @param chipSize Chip size in bytes.
+     * @param exclude Data register offsets of chip.
+     */
+    public void setConfigReg(final Pin pin, final long mmioHandle, final long chipSize, final Set<Integer> exclude) {
+        final var dev = String.format("/dev/gpiochip%d", pin.key().chip());
+        final var before = new MmioSnapshot(mmioHandle, 0, (int) (chipSize / 4));
+        final var after = new MmioSnapshot(mmioHandle, 0, (int) (chipSize / 4));
+        final var down = new MmioSnapshot(mmioHandle, 0, (int) (chipSize / 4));
+        try (final var gpio = new Gpio(dev, pin.key().pin(), Gpio.GpioConfig.builder().bias(GPIO_BIAS_DISABLE).
+                direction(GPIO_DIR_IN).drive(GPIO_DRIVE_DEFAULT).edge(GPIO_EDGE_NONE).inverted(false).label(cString(
+                Gen.class.getSimpleName())).event_clock(GPIO_EVENT_CLOCK_REALTIME).debounce_us(0).build())) {
+            // Input to output
+            before.read();
+            Gpio.gpioSetDirection(gpio.getHandle(), GPIO_DIR_OUT);
+            after.read();
+            Gpio.gpioSetDirection(gpio.getHandle(), GPIO_DIR_IN);
+            var reg = configDiff(before.values(), after.values(), exclude);
+            if (reg >= 0) {
+                final var mask = before.value(reg) ^ after.value(reg);
+                pin.dirIn(new Register("DIR_IN", before.offset(reg), before.value(reg) & mask)).dirOut(new Register("DIR_OUT",
+                        after.offset(reg), after.value(reg) & mask));
+            } else {
+                log.warn(String.format("Chip %d Pin %d direction register change not detected", pin.key().chip(), pin.key().
+                        pin()));
+            }
+            // Disabled to pull up to pull down
+            before.read();
+            Gpio.gpioSetBias(gpio.getHandle(), GPIO_BIAS_PULL_UP);
+            after.read();
+            Gpio.gpioSetBias(gpio.getHandle(), GPIO_BIAS_PULL_DOWN);
+            down.read();
+            Gpio.gpioSetBias(gpio.getHandle(), GPIO_BIAS_DISABLE);
+            reg = configDiff(before.values(), after.values(), exclude);
+            if (reg < 0) {
+                reg = configDiff(after.values(), down.values(), exclude);
+            }
+            if (reg >= 0) {
+                final var mask = (before.value(reg) ^ after.value(reg)) | (after.value(reg) ^ down.value(reg));
+                pin.biasDisable(new Register("BIAS_DISABLE", before.offset(reg), before.value(reg) & mask)).biasUp(new Register(
+                        "BIAS_UP", after.offset(reg), after.value(reg) & mask)).biasDown(new Register("BIAS_DOWN", down.offset(reg),
+                        down.value(reg) & mask));
+            } else {
+                log.warn(String.format("Chip %d Pin %d bias register change not detected", pin.key().chip(), pin.key().pin()));
+            }
+        } catch (RuntimeException e) {
+            log.error(String.format("Chip %d Pin %d Error %s", pin.key().chip(), pin.key().pin(), e.getMessage()));
+        }
+    }
+
     /**
      * Detect changes made by GPIO at register level.
      *
@@ -176,13 +356,52 @@ public class Gen implements Callable<Integer> {
                 final var mmio = new Mmio(file.chips().get(i), file.mmioSize().get(i), file.memPath());
                 mmioHandle.add(mmio.getHandle());
             }
+            // Data register offsets of each chip are excluded from configuration register detection
+            final List<Set<Integer>> dataOffsets = new ArrayList<>();
+            for (int i = 0; i < file.chips().size(); i++) {
+                dataOffsets.add(new HashSet<>());
+            }
+            for (int i = 0; i < file.groupChip().size(); i++) {
+                final var offsets = dataOffsets.get(file.groupChip().get(i));
+                offsets.add(file.dataInOnOffset().get(i % file.dataInOnOffset().size()));
+                offsets.add(file.dataInOffOffset().get(i % file.dataInOffOffset().size()));
+                offsets.add(file.dataOutOnOffset().get(i % file.dataOutOnOffset().size()));
+                offsets.add(file.dataOutOffOffset().get(i % file.dataOutOffOffset().size()));
+            }
+            final List<Pin> pins;
+            if (scan) {
+                // Scan pins of each chip in batches of 64 and only detect what scan missed pin by pin
+                pins = new ArrayList<>();
+                for (int chip = 0; chip < file.chips().size(); chip++) {
+                    final var dev = file.gpioDev().get(chip);
+                    final var chipPins = pinMap.values().stream().filter(pin -> pin.key().chip() == dev).toList();
+                    for (int i = 0; i < chipPins.size(); i += GPIO_LINES_MAX) {
+                        pins.addAll(scanDataReg(chipPins.subList(i, Math.min(i + GPIO_LINES_MAX, chipPins.size())), mmioHandle.
+                                get(chip), chip, file));
+                    }
+                }
+            } else {
+                pins = new ArrayList<>(pinMap.values());
+            }
             // Set register offset and mask for each pin
-            pinMap.entrySet().stream().map((entry) -> entry.getValue()).forEachOrdered((value) -> {
+            pins.forEach((value) -> {
                 setDataReg(value, mmioHandle, file.groupChip(), file.groupName(), file.dataInOnOffset(), file.
                         dataInOffOffset(), file.dataOutOnOffset(), file.dataOutOffOffset(), file.useInputDataReg());
             });
+            // Set direction and bias registers for each pin
+            pinMap.values().forEach((value) -> {
+                final var chip = file.gpioDev().indexOf(value.key().chip());
+                setConfigReg(value, mmioHandle.get(chip), file.mmioSize().get(chip), dataOffsets.get(chip));
+            });
             // Generate properties file
             file.genProperties(pinMap, inFileName, outFileName);
+            // Generate binary pin table
+            try {
+                PinTable.write(pinMap, file, Path.of(binFileName));
+            } catch (IllegalArgumentException e) {
+                log.error(String.format("Binary pin table %s not written: %s", binFileName, e.getMessage()));
+                exitCode = 1;
+            }
             // Close MMIO for each handle
             mmioHandle.forEach((handle) -> {
                 Mmio.mmioClose(handle);
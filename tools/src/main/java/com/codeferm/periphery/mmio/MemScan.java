@@ -15,8 +15,7 @@ import static com.codeferm.periphery.Gpio.GPIO_DRIVE_DEFAULT;
 import static com.codeferm.periphery.Gpio.GPIO_EDGE_NONE;
 import static com.codeferm.periphery.Gpio.GPIO_EVENT_CLOCK_REALTIME;
 import com.codeferm.periphery.Mmio;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
 import java.util.concurrent.Callable;
 import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine;
@@ -61,42 +60,60 @@ public class MemScan implements Callable<Integer> {
      */
     @CommandLine.Option(names = {"-l", "--line"}, description = "GPIO line, ${DEFAULT-VALUE} by default.")
     private int line = 1;
+    /**
+     * Watch mode trace file.
+     */
+    @CommandLine.Option(names = {"-t", "--trace"}, description = "Watch words and write changes to trace file.")
+    private String trace;
+    /**
+     * Watch sample interval.
+     */
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "Watch interval in ns (0 as fast as possible), "
+            + "${DEFAULT-VALUE} by default.")
+    private long interval = 1000;
+    /**
+     * Watch duration.
+     */
+    @CommandLine.Option(names = {"-m", "--millis"}, description = "Watch duration in ms, ${DEFAULT-VALUE} by default.")
+    private long millis = 10000;
+    /**
+     * Maximum trace records.
+     */
+    @CommandLine.Option(names = {"-r", "--records"}, description = "Maximum trace records, ${DEFAULT-VALUE} by default.")
+    private int records = 1000000;
+    /**
+     * Replay trace file.
+     */
+    @CommandLine.Option(names = {"-y", "--replay"}, description = "Replay trace file and show summary.")
+    private String replay;
 
     /**
-     * Return values from all registers.
+     * Return values from all registers with one block read.
      *
      * @param mmioHandle MMIO handle.
-     * @return List of register values.
-     */
-    public List<Integer> getRegValues(final Long mmioHandle) {
-        final var list = new ArrayList<Integer>();
-        final var value = new int[1];
-        for (long i = 0; i < words; i++) {
-            Mmio.mmioRead32(mmioHandle, i * 4, value);
-            list.add(value[0]);
-        }
-        return list;
+     * @return Register values.
+     */
+    public int[] getRegValues(final long mmioHandle) {
+        return new MmioSnapshot(mmioHandle, 0, (int) words).read().values();
     }
 
     /**
-     * Compare list values and log difference.
+     * Compare register values and log difference.
      *
-     * @param list1 First list.
-     * @param list2 Second list.
+     * @param list1 First values.
+     * @param list2 Second values.
      * @param text Description text.
      */
-    public void listDiff(final List<Integer> list1, final List<Integer> list2, final String text) {
-        for (int i = 0; i < list1.size(); i++) {
-            if (!list1.get(i).equals(list2.get(i))) {
-                int diff;
-                if (list1.get(i) > list2.get(i)) {
-                    diff = list1.get(i) - list2.get(i);
-                } else {
-                    diff = list2.get(i) - list1.get(i);
-                }
-                log.info(String.format("%s difference found at offset 0x%08x before 0x%08x after 0x%08x difference 0x%08x", text,
-                        i * 4, list1.get(i), list2.get(i), diff));
+    public void listDiff(final int[] list1, final int[] list2, final String text) {
+        for (var i = MmioSnapshot.nextDiff(list1, list2, 0); i >= 0; i = MmioSnapshot.nextDiff(list1, list2, i + 1)) {
+            int diff;
+            if (list1[i] > list2[i]) {
+                diff = list1[i] - list2[i];
+            } else {
+                diff = list2[i] - list1[i];
             }
+            log.info(String.format("%s difference found at offset 0x%08x before 0x%08x after 0x%08x difference 0x%08x", text, i * 4,
+                    list1[i], list2[i], diff));
         }
     }
 
@@ -170,7 +187,30 @@ public class MemScan implements Callable<Integer> {
     }
 
     /**
-     * Detect changes made by GPIO at register level.
+     * Watch registers and write changes to trace file.
+     *
+     * @param mmioHandle MMIO handle.
+     */
+    public void watch(final long mmioHandle) {
+        log.info(String.format("Watching %d words every %d ns for %d ms", words, interval, millis));
+        final var mmioTrace = MmioTrace.record(mmioHandle, 0, (int) words, interval, millis * 1000000L, Path.of(trace), records);
+        log.info(mmioTrace.summary());
+    }
+
+    /**
+     * Log every change in trace file followed by summary.
+     */
+    public void replay() {
+        final var mmioTrace = MmioTrace.open(Path.of(replay));
+        for (int i = mmioTrace.words(); i < mmioTrace.size(); i++) {
+            log.info(String.format("%12d ns offset 0x%08x value 0x%08x", mmioTrace.timestamp(i), mmioTrace.offset(i), mmioTrace.
+                    value(i)));
+        }
+        log.info(mmioTrace.summary());
+    }
+
+    /**
+     * Detect changes made by GPIO at register level, watch registers or replay trace.
      *
      * @return Exit code.
      * @throws InterruptedException Possible exception.
@@ -178,11 +218,24 @@ public class MemScan implements Callable<Integer> {
     @Override
     public Integer call() throws InterruptedException {
         var exitCode = 0;
+        if (replay != null) {
+            try {
+                replay();
+            } catch (RuntimeException e) {
+                log.error(e.getMessage());
+                exitCode = 1;
+            }
+            return exitCode;
+        }
         log.atDebug().log(String.format("Memory address 0x%08x words 0x%08x", address, words));
         try (final var mmio = new Mmio(address, words * 4, path)) {
-            detectMode(mmio.getHandle());
-            detectData(mmio.getHandle());
-            detectPull(mmio.getHandle());
+            if (trace != null) {
+                watch(mmio.getHandle());
+            } else {
+                detectMode(mmio.getHandle());
+                detectData(mmio.getHandle());
+                detectPull(mmio.getHandle());
+            }
         } catch (RuntimeException e) {
             log.error(e.getMessage());
             exitCode = 1;
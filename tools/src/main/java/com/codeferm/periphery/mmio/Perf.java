@@ -185,6 +185,59 @@ public class Perf implements Callable<Integer> {
         }
     }
 
+    /**
+     * Performance test using ByteBuffer register view, so no JNI call is made per write.
+     *
+     * @param pin Pin number.
+     * @param regs Registers for pin's chip.
+     * @param samples How many samples to run.
+     */
+    public void perfRegisters(final Pin pin, final MmioRegisters regs, final long samples) {
+        try (final var gpio = new Gpio(String.format("/dev/gpiochip%d", pin.key().chip()), pin.key().pin(), GPIO_DIR_OUT)) {
+            final int dataOutOnOffset = pin.dataOutOn().offset();
+            final int dataOutOffOffset = pin.dataOutOff().offset();
+            final int on;
+            final int off;
+            // If on and off registers are the same use AND
+            if (dataOutOffOffset == dataOutOnOffset) {
+                // Only do read one time to get current value
+                final var reg = regs.read32(dataOutOffOffset);
+                on = reg | pin.dataOutOn().mask();
+                off = reg & pin.dataOutOff().mask();
+            } else {
+                // If on and off registers are different write mask like Raspberry Pi
+                on = pin.dataOutOn().mask();
+                off = pin.dataOutOff().mask();
+            }
+            log.info(String.format("Running register buffer MMIO write test with %d samples", samples));
+            final var start = Instant.now();
+            for (var i = 0; i < samples; i++) {
+                regs.write32(dataOutOnOffset, on);
+                regs.write32(dataOutOffOffset, off);
+            }
+            final var finish = Instant.now();
+            // Elapsed milliseconds
+            final var timeElapsed = Duration.between(start, finish).toMillis();
+            log.info(String.format("%.2f KHz", ((double) samples / (double) timeElapsed)));
+        }
+    }
+
+    /**
+     * Performance test using native waveform player, so whole pulse train is one JNI call.
+     *
+     * @param pin Pin number.
+     * @param samples How many samples to run.
+     */
+    public void perfWaveform(final Pin pin, final long samples) {
+        try (final var gpio = new Gpio(String.format("/dev/gpiochip%d", pin.key().chip()), pin.key().pin(), GPIO_DIR_OUT)) {
+            // No delay, so pulses are as fast as the bus allows
+            final var waveform = new MmioWaveform(pin.mmioHadle()).pulse(pin, 0, 0);
+            log.info(String.format("Running waveform MMIO write test with %d samples", samples));
+            final var timeElapsed = waveform.play((int) Math.min(samples, Integer.MAX_VALUE)) / 1000000;
+            log.info(String.format("%.2f KHz", ((double) samples / (double) timeElapsed)));
+        }
+    }
+
     /**
      * Read pin map properties and run performance test.
      *
@@ -201,10 +254,13 @@ public class Perf implements Callable<Integer> {
         if (!pinMap.isEmpty()) {
             // MMIO handle map based on GPIO dev key
             final Map<Integer, Long> mmioHandle = new HashMap<>();
+            // Register view based on GPIO dev key
+            final Map<Integer, MmioRegisters> mmioRegs = new HashMap<>();
             // Open MMIO for each chip
             for (int i = 0; i < file.chips().size(); i++) {
                 final var mmio = new Mmio(file.chips().get(i), file.mmioSize().get(i), file.memPath());
                 mmioHandle.put(file.gpioDev().get(i), mmio.getHandle());
+                mmioRegs.put(file.gpioDev().get(i), new MmioRegisters(mmio));
             }
             // Set MMIO handle for each pin
             pinMap.entrySet().forEach((entry) -> {
@@ -217,6 +273,8 @@ public class Perf implements Callable<Integer> {
                 perfGood(pin, samples);
             }
             perfBest(pin, samples);
+            perfRegisters(pin, mmioRegs.get(pin.key().chip()), samples);
+            perfWaveform(pin, samples);
             // Close all MMIO handles
             mmioHandle.entrySet().forEach((entry) -> {
                 Mmio.mmioClose(entry.getValue());